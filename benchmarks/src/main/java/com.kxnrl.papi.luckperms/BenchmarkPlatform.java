@@ -0,0 +1,34 @@
+package com.kxnrl.papi.luckperms;
+
+import com.kxnrl.papi.luckperms.structures.IPlaceholderFormatter;
+import com.kxnrl.papi.luckperms.structures.IPlaceholderPlatform;
+
+// Formats like the plugin but keeps its own tick counter, so no Sponge server is needed.
+final class BenchmarkPlatform implements IPlaceholderPlatform
+{
+    private final LuckPermsPlaceHolders plugin;
+    private volatile int tick;
+
+    BenchmarkPlatform() {
+        this.plugin = new LuckPermsPlaceHolders();
+    }
+
+    void nextTick() {
+        ++this.tick;
+    }
+
+    @Override
+    public IPlaceholderFormatter getFormatter() {
+        return this.plugin.getFormatter();
+    }
+
+    @Override
+    public int getCurrentTick() {
+        return this.tick;
+    }
+
+    @Override
+    public String getLoadingPlaceholder() {
+        return this.plugin.getLoadingPlaceholder();
+    }
+}
@@ -0,0 +1,99 @@
+package com.kxnrl.papi.luckperms;
+
+import me.rojo8399.placeholderapi.ExpansionFunction;
+import me.rojo8399.placeholderapi.Placeholder;
+import me.rojo8399.placeholderapi.Source;
+import me.rojo8399.placeholderapi.Token;
+import org.openjdk.jmh.annotations.*;
+import org.spongepowered.api.entity.living.player.Player;
+
+import javax.annotation.Nullable;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Dispatch cost of the PlaceholderAPI entry point, values come from the warm cache so the call itself dominates.
+ *
+ *   reflective - the annotated handler the plugin used to register, invoked the way PlaceholderAPI does it:
+ *                token fixed, source checked and cast, then Method.invoke
+ *   function   - the ExpansionFunction the plugin now registers
+ *
+ * PlaceholderAPI needs a running server, so its own adapter isn't part of the measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExpansionBenchmark
+{
+    @Param({"prefix", "has_permission_perm.0", "meta_rank"})
+    public String token;
+
+    private PAPIProvider provider;
+    private Player player;
+    private Method method;
+    private Annotated annotated;
+    private LuckPermsPlaceHolders plugin;
+    private ExpansionFunction<Object, Object, String> function;
+
+    @Setup
+    public void setup() throws Exception {
+        final FakeLuckPerms luckPerms = FakeLuckPerms.create(200, 5, 10, 10);
+        this.provider = new PAPIProvider(new BenchmarkPlatform(), luckPerms);
+        this.player = luckPerms.player();
+        this.plugin = new LuckPermsPlaceHolders();
+        this.plugin.provider = this.provider;
+        this.annotated = new Annotated(this.provider);
+        this.method = Annotated.class.getMethod("luckperms", String.class, Player.class);
+        this.function = this.plugin::luckperms;
+        final String value = this.function.handle(this.token, this.player, this.player);
+        if (value.isEmpty()) {
+            throw new IllegalStateException("Empty placeholder " + this.token);
+        }
+        if (!value.equals(this.reflective())) {
+            throw new IllegalStateException("Handlers disagree on " + this.token);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.provider.close();
+    }
+
+    @Benchmark
+    public Object reflective() throws Exception {
+        final Object source = Player.class.isInstance(this.player) ? Player.class.cast(this.player) : null;
+        return this.method.invoke(this.annotated, fix(this.token), source);
+    }
+
+    @Benchmark
+    public String function() throws Exception {
+        return this.function.handle(this.token, this.player, this.player);
+    }
+
+    // @Token(fix = true)
+    private static String fix(final String token) {
+        return (token == null) ? null : token.trim().toLowerCase();
+    }
+
+    // The handler as it was before the plugin switched to an ExpansionFunction.
+    public static final class Annotated
+    {
+        private final PAPIProvider provider;
+
+        private Annotated(final PAPIProvider provider) {
+            this.provider = provider;
+        }
+
+        @Placeholder(id = "luckperms")
+        public String luckperms(@Token(fix = true) @Nullable final String token, @Nullable @Source final Player player) {
+            if (player == null || this.provider == null) {
+                return "";
+            }
+            final String result = this.provider.onPlaceholderRequest(player, token);
+            return (result == null) ? "" : result;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.kxnrl.papi.luckperms;
+
+import net.luckperms.api.cacheddata.CachedDataManager;
+import net.luckperms.api.cacheddata.CachedMetaData;
+import net.luckperms.api.cacheddata.CachedPermissionData;
+import net.luckperms.api.metastacking.MetaStackDefinition;
+import net.luckperms.api.query.QueryOptions;
+import net.luckperms.api.util.Tristate;
+
+import java.util.*;
+
+// The same permission and meta data answer every QueryOptions, like a user without contextual nodes.
+final class FakeCachedData implements CachedDataManager
+{
+    private final Permissions permissions;
+    private final Meta meta;
+
+    FakeCachedData(final Set<String> granted, final String prefix, final String suffix, final Map<String, List<String>> meta) {
+        this.permissions = new Permissions(granted);
+        this.meta = new Meta(prefix, suffix, meta);
+    }
+
+    @Override
+    public Container<CachedPermissionData> permissionData() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Container<CachedMetaData> metaData() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public CachedPermissionData getPermissionData(final QueryOptions queryOptions) {
+        return this.permissions;
+    }
+
+    @Override
+    public CachedMetaData getMetaData(final QueryOptions queryOptions) {
+        return this.meta;
+    }
+
+    @Override
+    public void invalidate() {
+    }
+
+    @Override
+    public void invalidatePermissionCalculators() {
+    }
+
+    private static final class Permissions implements CachedPermissionData
+    {
+        private final Set<String> granted;
+        private final Map<String, Boolean> permissionMap;
+
+        private Permissions(final Set<String> granted) {
+            this.granted = Collections.unmodifiableSet(new HashSet<String>(granted));
+            final Map<String, Boolean> permissionMap = new HashMap<String, Boolean>();
+            granted.forEach(p -> permissionMap.put(p, Boolean.TRUE));
+            this.permissionMap = Collections.unmodifiableMap(permissionMap);
+        }
+
+        @Override
+        public QueryOptions getQueryOptions() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Tristate checkPermission(final String permission) {
+            return this.granted.contains(permission) ? Tristate.TRUE : Tristate.UNDEFINED;
+        }
+
+        @Override
+        public void invalidateCache() {
+        }
+
+        @Override
+        public Map<String, Boolean> getPermissionMap() {
+            return this.permissionMap;
+        }
+    }
+
+    private static final class Meta implements CachedMetaData
+    {
+        private final String prefix;
+        private final String suffix;
+        private final Map<String, List<String>> meta;
+        private final SortedMap<Integer, String> prefixes;
+        private final SortedMap<Integer, String> suffixes;
+
+        private Meta(final String prefix, final String suffix, final Map<String, List<String>> meta) {
+            this.prefix = prefix;
+            this.suffix = suffix;
+            this.meta = Collections.unmodifiableMap(new HashMap<String, List<String>>(meta));
+            this.prefixes = Collections.unmodifiableSortedMap(new TreeMap<Integer, String>(Collections.singletonMap(0, prefix)));
+            this.suffixes = Collections.unmodifiableSortedMap(new TreeMap<Integer, String>(Collections.singletonMap(0, suffix)));
+        }
+
+        @Override
+        public QueryOptions getQueryOptions() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getMetaValue(final String key) {
+            final List<String> values = this.meta.get(key);
+            return (values == null || values.isEmpty()) ? null : values.get(0);
+        }
+
+        @Override
+        public String getPrefix() {
+            return this.prefix;
+        }
+
+        @Override
+        public String getSuffix() {
+            return this.suffix;
+        }
+
+        @Override
+        public Map<String, List<String>> getMeta() {
+            return this.meta;
+        }
+
+        @Override
+        public SortedMap<Integer, String> getPrefixes() {
+            return this.prefixes;
+        }
+
+        @Override
+        public SortedMap<Integer, String> getSuffixes() {
+            return this.suffixes;
+        }
+
+        @Override
+        public MetaStackDefinition getPrefixStackDefinition() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public MetaStackDefinition getSuffixStackDefinition() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
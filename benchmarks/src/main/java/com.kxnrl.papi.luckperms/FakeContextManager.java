@@ -0,0 +1,102 @@
+package com.kxnrl.papi.luckperms;
+
+import net.luckperms.api.context.*;
+import net.luckperms.api.model.user.User;
+import net.luckperms.api.query.QueryMode;
+import net.luckperms.api.query.QueryOptions;
+
+import java.util.Optional;
+
+// Every subject sits in the same context, so each lookup hands back the same QueryOptions instance like LuckPerms' own cache.
+final class FakeContextManager implements ContextManager
+{
+    private final QueryOptions queryOptions;
+    private final Optional<QueryOptions> userQueryOptions;
+    private final Optional<ImmutableContextSet> userContext;
+    private final ContextSetFactory factory;
+
+    FakeContextManager(final QueryOptions queryOptions) {
+        this.queryOptions = queryOptions;
+        this.userQueryOptions = Optional.of(queryOptions);
+        this.userContext = Optional.of(queryOptions.context());
+        this.factory = new Factory();
+    }
+
+    @Override
+    public ImmutableContextSet getContext(final Object subject) {
+        return this.queryOptions.context();
+    }
+
+    @Override
+    public Optional<ImmutableContextSet> getContext(final User user) {
+        return this.userContext;
+    }
+
+    @Override
+    public ImmutableContextSet getStaticContext() {
+        return this.queryOptions.context();
+    }
+
+    @Override
+    public QueryOptions.Builder queryOptionsBuilder(final QueryMode mode) {
+        return new FakeQueryOptions.Builder(mode);
+    }
+
+    @Override
+    public QueryOptions getQueryOptions(final Object subject) {
+        return this.queryOptions;
+    }
+
+    @Override
+    public Optional<QueryOptions> getQueryOptions(final User user) {
+        return this.userQueryOptions;
+    }
+
+    @Override
+    public QueryOptions getStaticQueryOptions() {
+        return this.queryOptions;
+    }
+
+    @Override
+    public void registerCalculator(final ContextCalculator<?> calculator) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void unregisterCalculator(final ContextCalculator<?> calculator) {
+        throw new UnsupportedOperationException();
+    }
+
+    // Static helpers such as ImmutableContextSet.empty() end up here.
+    @Override
+    public ContextSetFactory getContextSetFactory() {
+        return this.factory;
+    }
+
+    @Override
+    public void invalidateCache(final Object subject) {
+    }
+
+    private static final class Factory implements ContextSetFactory
+    {
+        @Override
+        public ImmutableContextSet.Builder immutableBuilder() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ImmutableContextSet immutableOf(final String key, final String value) {
+            return FakeContextSet.of(key, value);
+        }
+
+        @Override
+        public ImmutableContextSet immutableEmpty() {
+            return FakeContextSet.EMPTY;
+        }
+
+        @Override
+        public MutableContextSet mutable() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.kxnrl.papi.luckperms;
+
+import net.luckperms.api.context.Context;
+import net.luckperms.api.context.ContextSet;
+import net.luckperms.api.context.ImmutableContextSet;
+import net.luckperms.api.context.MutableContextSet;
+
+import java.util.*;
+
+// Plain immutable context set, resolution compares and hashes these on every call so they can't be proxies.
+final class FakeContextSet implements ImmutableContextSet
+{
+    static final FakeContextSet EMPTY = new FakeContextSet(Collections.emptyMap());
+
+    private final Map<String, Set<String>> values;
+    private final int hash;
+
+    private FakeContextSet(final Map<String, Set<String>> values) {
+        this.values = values;
+        this.hash = values.hashCode();
+    }
+
+    static FakeContextSet of(final String key, final String value) {
+        return new FakeContextSet(Collections.singletonMap(key, Collections.singleton(value)));
+    }
+
+    @Override
+    public boolean isImmutable() {
+        return true;
+    }
+
+    @Override
+    public ImmutableContextSet immutableCopy() {
+        return this;
+    }
+
+    @Override
+    public MutableContextSet mutableCopy() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Set<Context> toSet() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Map<String, Set<String>> toMap() {
+        return this.values;
+    }
+
+    @Override
+    public Map<String, String> toFlattenedMap() {
+        final Map<String, String> flattened = new HashMap<String, String>();
+        this.values.forEach((key, values) -> flattened.put(key, values.iterator().next()));
+        return flattened;
+    }
+
+    @Override
+    public Iterator<Context> iterator() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean containsKey(final String key) {
+        return this.values.containsKey(key);
+    }
+
+    @Override
+    public Set<String> getValues(final String key) {
+        return this.values.getOrDefault(key, Collections.emptySet());
+    }
+
+    @Override
+    public boolean contains(final String key, final String value) {
+        return this.getValues(key).contains(value);
+    }
+
+    // Every pair held here has to be present in the other set.
+    @Override
+    public boolean isSatisfiedBy(final ContextSet other) {
+        for (final Map.Entry<String, Set<String>> entry : this.values.entrySet()) {
+            for (final String value : entry.getValue()) {
+                if (!other.contains(entry.getKey(), value)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.values.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return this.values.size();
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        return this == o || (o instanceof FakeContextSet && this.values.equals(((FakeContextSet)o).values));
+    }
+
+    @Override
+    public int hashCode() {
+        return this.hash;
+    }
+
+    @Override
+    public String toString() {
+        return "FakeContextSet" + this.values;
+    }
+}
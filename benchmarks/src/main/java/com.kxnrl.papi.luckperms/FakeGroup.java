@@ -0,0 +1,59 @@
+package com.kxnrl.papi.luckperms;
+
+import net.luckperms.api.cacheddata.CachedDataManager;
+import net.luckperms.api.model.group.Group;
+import net.luckperms.api.node.Node;
+import net.luckperms.api.query.QueryOptions;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.OptionalInt;
+
+final class FakeGroup extends FakeHolder implements Group
+{
+    private final String name;
+    private final String displayName;
+    private final OptionalInt weight;
+
+    FakeGroup(final String name, final String displayName, final int weight, final List<Node> nodes) {
+        super(displayName, nodes);
+        this.name = name;
+        this.displayName = displayName;
+        this.weight = OptionalInt.of(weight);
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return this.displayName;
+    }
+
+    @Override
+    public String getDisplayName(final QueryOptions queryOptions) {
+        return this.displayName;
+    }
+
+    @Override
+    public OptionalInt getWeight() {
+        return this.weight;
+    }
+
+    @Override
+    public CachedDataManager getCachedData() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Collection<Node> resolveInheritedNodes(final QueryOptions queryOptions) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String toString() {
+        return "FakeGroup(" + this.name + ")";
+    }
+}
@@ -0,0 +1,68 @@
+package com.kxnrl.papi.luckperms;
+
+import net.luckperms.api.model.PermissionHolder;
+import net.luckperms.api.model.data.DataType;
+import net.luckperms.api.model.data.NodeMap;
+import net.luckperms.api.node.Node;
+import net.luckperms.api.query.QueryOptions;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedSet;
+
+// What users and groups share, the node list is fixed when the fake is built.
+abstract class FakeHolder implements PermissionHolder
+{
+    private final String friendlyName;
+    private final List<Node> nodes;
+
+    FakeHolder(final String friendlyName, final List<Node> nodes) {
+        this.friendlyName = friendlyName;
+        this.nodes = Collections.unmodifiableList(nodes);
+    }
+
+    @Override
+    public Identifier getIdentifier() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String getFriendlyName() {
+        return this.friendlyName;
+    }
+
+    @Override
+    public NodeMap getData(final DataType dataType) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public NodeMap data() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public NodeMap transientData() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Collection<Node> getNodes() {
+        return this.nodes;
+    }
+
+    @Override
+    public SortedSet<Node> getDistinctNodes() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public SortedSet<Node> resolveDistinctInheritedNodes(final QueryOptions queryOptions) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void auditTemporaryNodes() {
+    }
+}
@@ -0,0 +1,238 @@
+package com.kxnrl.papi.luckperms;
+
+import net.luckperms.api.LuckPerms;
+import net.luckperms.api.LuckPermsProvider;
+import net.luckperms.api.actionlog.ActionLogger;
+import net.luckperms.api.context.ContextManager;
+import net.luckperms.api.event.EventBus;
+import net.luckperms.api.event.EventSubscription;
+import net.luckperms.api.messaging.MessagingService;
+import net.luckperms.api.messenger.MessengerProvider;
+import net.luckperms.api.metastacking.MetaStackDefinition;
+import net.luckperms.api.metastacking.MetaStackElement;
+import net.luckperms.api.metastacking.MetaStackFactory;
+import net.luckperms.api.model.group.Group;
+import net.luckperms.api.model.group.GroupManager;
+import net.luckperms.api.model.user.User;
+import net.luckperms.api.model.user.UserManager;
+import net.luckperms.api.node.Node;
+import net.luckperms.api.node.NodeBuilderRegistry;
+import net.luckperms.api.node.types.InheritanceNode;
+import net.luckperms.api.platform.Platform;
+import net.luckperms.api.platform.PluginMetadata;
+import net.luckperms.api.track.Track;
+import net.luckperms.api.track.TrackManager;
+import org.spongepowered.api.entity.living.player.Player;
+
+import java.lang.reflect.Method;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/*
+ * In-memory LuckPerms with one online user.
+ *
+ * groups g0..gN form an inheritance chain of the given depth starting at the user's primary group g0,
+ * the track "main" holds the first trackSize of them, and "vip" is held temporarily by the user.
+ * Every holder owns nodeCount permissions, the user additionally temporaryNodes expiring ones (temp.N).
+ *
+ * Everything a resolution or an index rebuild calls is a plain class, so -prof gc only shows the plugin's own allocations.
+ * Managers the provider reads once at setup or on group changes stay proxies, and so does the Player (getUniqueId only).
+ */
+final class FakeLuckPerms implements LuckPerms
+{
+    private final Player player;
+    private final User user;
+    private final UserManager userManager;
+    private final GroupManager groupManager;
+    private final TrackManager trackManager;
+    private final ContextManager contextManager;
+    private final MetaStackFactory metaStackFactory;
+    private final EventBus eventBus;
+
+    private FakeLuckPerms(final int nodeCount, final int depth, final int temporaryNodes, final int trackSize) {
+        final int groupCount = Math.max(depth, trackSize);
+        final Map<String, Group> groups = new LinkedHashMap<String, Group>();
+        final Map<String, List<Node>> groupNodes = new HashMap<String, List<Node>>();
+        for (int i = 0; i < groupCount; ++i) {
+            final String name = "g" + i;
+            final List<Node> nodes = permissions(name + ".perm.", nodeCount);
+            if (i + 1 < depth) {
+                nodes.add(FakeNode.inheritance("g" + (i + 1), null));
+            }
+            groupNodes.put(name, nodes);
+            groups.put(name, new FakeGroup(name, "Group " + i, i, nodes));
+        }
+        groupNodes.put("vip", permissions("vip.perm.", nodeCount));
+        groups.put("vip", new FakeGroup("vip", "VIP", 100, groupNodes.get("vip")));
+
+        final List<Node> userNodes = permissions("perm.", nodeCount);
+        userNodes.add(FakeNode.inheritance("g0", null));
+        final Instant expiry = Instant.now().plus(7L, ChronoUnit.DAYS);
+        for (int i = 0; i < temporaryNodes; ++i) {
+            userNodes.add(FakeNode.permission("temp." + i, expiry));
+        }
+        userNodes.add(FakeNode.inheritance("vip", expiry));
+
+        // inherited view: own nodes plus everything reachable through inheritance nodes
+        final List<Node> inherited = new ArrayList<Node>(userNodes);
+        final Deque<String> pending = new ArrayDeque<String>(Arrays.asList("g0", "vip"));
+        final Set<String> visited = new HashSet<String>();
+        while (!pending.isEmpty()) {
+            final String name = pending.poll();
+            if (!visited.add(name)) {
+                continue;
+            }
+            for (final Node node : groupNodes.get(name)) {
+                inherited.add(node);
+                if (node instanceof InheritanceNode) {
+                    pending.add(((InheritanceNode)node).getGroupName());
+                }
+            }
+        }
+        final Set<String> granted = new HashSet<String>();
+        inherited.forEach(n -> granted.add(n.getKey()));
+
+        final List<String> track = new ArrayList<String>();
+        for (int i = 0; i < trackSize; ++i) {
+            track.add("g" + i);
+        }
+        final Track mainTrack = new FakeTrack("main", track);
+
+        final Map<String, List<String>> meta = Collections.singletonMap("rank", Collections.singletonList("1"));
+        final FakeCachedData cachedData = new FakeCachedData(granted, "&c[Admin] ", " &7*", meta);
+        final UUID uuid = UUID.randomUUID();
+        this.user = new FakeUser(uuid, "Benchmark", "g0", userNodes, inherited, cachedData);
+        this.player = Fakes.of(Player.class)
+                .returning("getUniqueId", uuid)
+                .returning("getName", "Benchmark")
+                .build();
+
+        this.userManager = new FakeUserManager(this.user);
+        this.contextManager = new FakeContextManager(FakeQueryOptions.contextual(FakeContextSet.EMPTY));
+        this.groupManager = Fakes.of(GroupManager.class)
+                .on("getGroup", args -> groups.get(((String)args[0]).toLowerCase()))
+                .returning("getLoadedGroups", new HashSet<Group>(groups.values()))
+                .build();
+        this.trackManager = Fakes.of(TrackManager.class)
+                .on("getTrack", args -> "main".equalsIgnoreCase((String)args[0]) ? mainTrack : null)
+                .returning("getLoadedTracks", Collections.singleton(mainTrack))
+                .build();
+        this.metaStackFactory = Fakes.of(MetaStackFactory.class)
+                .on("fromString", args -> ((String)args[0]).startsWith("highest") || ((String)args[0]).startsWith("lowest")
+                        ? Optional.of(Fakes.of(MetaStackElement.class).build())
+                        : Optional.empty())
+                .on("createDefinition", args -> Fakes.of(MetaStackDefinition.class).build())
+                .build();
+        this.eventBus = Fakes.of(EventBus.class)
+                .on("subscribe", args -> Fakes.of(EventSubscription.class)
+                        .returning("close", null)
+                        .returning("isActive", true)
+                        .build())
+                .build();
+        register(this);
+    }
+
+    static FakeLuckPerms create(final int nodeCount, final int depth, final int temporaryNodes, final int trackSize) {
+        return new FakeLuckPerms(nodeCount, depth, temporaryNodes, trackSize);
+    }
+
+    Player player() {
+        return this.player;
+    }
+
+    User user() {
+        return this.user;
+    }
+
+    @Override
+    public String getServerName() {
+        return "benchmark";
+    }
+
+    @Override
+    public UserManager getUserManager() {
+        return this.userManager;
+    }
+
+    @Override
+    public GroupManager getGroupManager() {
+        return this.groupManager;
+    }
+
+    @Override
+    public TrackManager getTrackManager() {
+        return this.trackManager;
+    }
+
+    @Override
+    public Platform getPlatform() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public PluginMetadata getPluginMetadata() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public EventBus getEventBus() {
+        return this.eventBus;
+    }
+
+    @Override
+    public Optional<MessagingService> getMessagingService() {
+        return Optional.empty();
+    }
+
+    @Override
+    public ActionLogger getActionLogger() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ContextManager getContextManager() {
+        return this.contextManager;
+    }
+
+    @Override
+    public NodeBuilderRegistry getNodeBuilderRegistry() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public MetaStackFactory getMetaStackFactory() {
+        return this.metaStackFactory;
+    }
+
+    @Override
+    public CompletableFuture<Void> runUpdateTask() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void registerMessengerProvider(final MessengerProvider messengerProvider) {
+        throw new UnsupportedOperationException();
+    }
+
+    // Static API helpers such as QueryOptions.nonContextual() go through LuckPermsProvider.
+    private static void register(final LuckPerms api) {
+        try {
+            final Method register = LuckPermsProvider.class.getDeclaredMethod("register", LuckPerms.class);
+            register.setAccessible(true);
+            register.invoke(null, api);
+        }
+        catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("Unable to register the fake LuckPerms instance", ex);
+        }
+    }
+
+    private static List<Node> permissions(final String prefix, final int count) {
+        final List<Node> nodes = new ArrayList<Node>(count + 1);
+        for (int i = 0; i < count; ++i) {
+            nodes.add(FakeNode.permission(prefix + i, null));
+        }
+        return nodes;
+    }
+}
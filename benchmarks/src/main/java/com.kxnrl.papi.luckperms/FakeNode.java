@@ -0,0 +1,131 @@
+package com.kxnrl.papi.luckperms;
+
+import net.luckperms.api.context.ImmutableContextSet;
+import net.luckperms.api.node.Node;
+import net.luckperms.api.node.NodeEqualityPredicate;
+import net.luckperms.api.node.metadata.NodeMetadataKey;
+import net.luckperms.api.node.types.InheritanceNode;
+import net.luckperms.api.node.types.PermissionNode;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+// Granted, context-free nodes; index rebuilds walk every one of them, so they are plain classes.
+abstract class FakeNode implements Node
+{
+    private final String key;
+    private final Instant expiry;
+
+    private FakeNode(final String key, final Instant expiry) {
+        this.key = key;
+        this.expiry = expiry;
+    }
+
+    static PermissionNode permission(final String permission, final Instant expiry) {
+        return new Permission(permission, expiry);
+    }
+
+    static InheritanceNode inheritance(final String groupName, final Instant expiry) {
+        return new Inheritance(groupName, expiry);
+    }
+
+    @Override
+    public String getKey() {
+        return this.key;
+    }
+
+    @Override
+    public boolean getValue() {
+        return true;
+    }
+
+    @Override
+    public Collection<String> resolveShorthand() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean hasExpiry() {
+        return this.expiry != null;
+    }
+
+    @Override
+    public Instant getExpiry() {
+        return this.expiry;
+    }
+
+    @Override
+    public boolean hasExpired() {
+        return this.expiry != null && this.expiry.isBefore(Instant.now());
+    }
+
+    @Override
+    public ImmutableContextSet getContexts() {
+        return FakeContextSet.EMPTY;
+    }
+
+    @Override
+    public <T> Optional<T> getMetadata(final NodeMetadataKey<T> key) {
+        return Optional.empty();
+    }
+
+    @Override
+    public boolean equals(final Node other, final NodeEqualityPredicate predicate) {
+        return predicate.areEqual(this, other);
+    }
+
+    @Override
+    public String toString() {
+        return "FakeNode(" + this.key + ")";
+    }
+
+    private static final class Permission extends FakeNode implements PermissionNode
+    {
+        private Permission(final String permission, final Instant expiry) {
+            super(permission, expiry);
+        }
+
+        @Override
+        public String getPermission() {
+            return this.getKey();
+        }
+
+        @Override
+        public boolean isWildcard() {
+            return false;
+        }
+
+        @Override
+        public OptionalInt getWildcardLevel() {
+            return OptionalInt.empty();
+        }
+
+        @Override
+        public PermissionNode.Builder toBuilder() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final class Inheritance extends FakeNode implements InheritanceNode
+    {
+        private final String groupName;
+
+        private Inheritance(final String groupName, final Instant expiry) {
+            super("group." + groupName, expiry);
+            this.groupName = groupName;
+        }
+
+        @Override
+        public String getGroupName() {
+            return this.groupName;
+        }
+
+        @Override
+        public InheritanceNode.Builder toBuilder() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
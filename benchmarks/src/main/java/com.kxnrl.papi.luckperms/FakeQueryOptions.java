@@ -0,0 +1,165 @@
+package com.kxnrl.papi.luckperms;
+
+import net.luckperms.api.context.ContextSet;
+import net.luckperms.api.context.ImmutableContextSet;
+import net.luckperms.api.query.Flag;
+import net.luckperms.api.query.OptionKey;
+import net.luckperms.api.query.QueryMode;
+import net.luckperms.api.query.QueryOptions;
+
+import java.util.*;
+
+// Value-typed like the real implementation, the provider and MetaStackCache key their caches by these.
+final class FakeQueryOptions implements QueryOptions
+{
+    private final QueryMode mode;
+    private final ImmutableContextSet context;
+    private final Set<Flag> flags;
+    private final Map<OptionKey<?>, Object> options;
+    private final int hash;
+
+    private FakeQueryOptions(final QueryMode mode, final ImmutableContextSet context, final Set<Flag> flags, final Map<OptionKey<?>, Object> options) {
+        this.mode = mode;
+        this.context = context;
+        this.flags = flags;
+        this.options = options;
+        this.hash = Objects.hash(mode, context, flags, options);
+    }
+
+    static FakeQueryOptions contextual(final ImmutableContextSet context) {
+        return new FakeQueryOptions(QueryMode.CONTEXTUAL, context, Collections.unmodifiableSet(EnumSet.allOf(Flag.class)), Collections.emptyMap());
+    }
+
+    @Override
+    public QueryMode mode() {
+        return this.mode;
+    }
+
+    @Override
+    public ImmutableContextSet context() {
+        return this.context;
+    }
+
+    @Override
+    public boolean flag(final Flag flag) {
+        return this.flags.contains(flag);
+    }
+
+    @Override
+    public Set<Flag> flags() {
+        return this.flags;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <O> Optional<O> option(final OptionKey<O> key) {
+        return Optional.ofNullable((O)this.options.get(key));
+    }
+
+    @Override
+    public Map<OptionKey<?>, Object> options() {
+        return this.options;
+    }
+
+    @Override
+    public boolean satisfies(final ContextSet contextSet) {
+        return this.mode == QueryMode.NON_CONTEXTUAL || contextSet.isSatisfiedBy(this.context);
+    }
+
+    @Override
+    public QueryOptions.Builder toBuilder() {
+        return new Builder(this.mode, this.context, this.flags, this.options);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof FakeQueryOptions)) {
+            return false;
+        }
+        final FakeQueryOptions other = (FakeQueryOptions)o;
+        return this.hash == other.hash
+                && this.mode == other.mode
+                && this.context.equals(other.context)
+                && this.flags.equals(other.flags)
+                && this.options.equals(other.options);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.hash;
+    }
+
+    @Override
+    public String toString() {
+        return "FakeQueryOptions(" + this.mode + ", " + this.context + ", " + this.options + ")";
+    }
+
+    static final class Builder implements QueryOptions.Builder
+    {
+        private QueryMode mode;
+        private ImmutableContextSet context;
+        private final EnumSet<Flag> flags;
+        private final Map<OptionKey<?>, Object> options;
+
+        Builder(final QueryMode mode) {
+            this(mode, FakeContextSet.EMPTY, EnumSet.allOf(Flag.class), Collections.emptyMap());
+        }
+
+        private Builder(final QueryMode mode, final ImmutableContextSet context, final Set<Flag> flags, final Map<OptionKey<?>, Object> options) {
+            this.mode = mode;
+            this.context = context;
+            this.flags = flags.isEmpty() ? EnumSet.noneOf(Flag.class) : EnumSet.copyOf(flags);
+            this.options = new HashMap<OptionKey<?>, Object>(options);
+        }
+
+        @Override
+        public Builder mode(final QueryMode mode) {
+            this.mode = mode;
+            return this;
+        }
+
+        @Override
+        public Builder context(final ContextSet context) {
+            this.context = context.immutableCopy();
+            return this;
+        }
+
+        @Override
+        public Builder flag(final Flag flag, final boolean value) {
+            if (value) {
+                this.flags.add(flag);
+            }
+            else {
+                this.flags.remove(flag);
+            }
+            return this;
+        }
+
+        @Override
+        public Builder flags(final Set<Flag> flags) {
+            this.flags.clear();
+            this.flags.addAll(flags);
+            return this;
+        }
+
+        @Override
+        public <O> Builder option(final OptionKey<O> key, final O value) {
+            if (value == null) {
+                this.options.remove(key);
+            }
+            else {
+                this.options.put(key, value);
+            }
+            return this;
+        }
+
+        @Override
+        public QueryOptions build() {
+            final ImmutableContextSet context = (this.mode == QueryMode.CONTEXTUAL) ? this.context : FakeContextSet.EMPTY;
+            return new FakeQueryOptions(this.mode, context, Collections.unmodifiableSet(EnumSet.copyOf(this.flags)), Collections.unmodifiableMap(new HashMap<OptionKey<?>, Object>(this.options)));
+        }
+    }
+}
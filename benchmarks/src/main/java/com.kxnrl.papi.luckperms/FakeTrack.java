@@ -0,0 +1,96 @@
+package com.kxnrl.papi.luckperms;
+
+import net.luckperms.api.context.ContextSet;
+import net.luckperms.api.model.data.DataMutateResult;
+import net.luckperms.api.model.group.Group;
+import net.luckperms.api.model.user.User;
+import net.luckperms.api.track.DemotionResult;
+import net.luckperms.api.track.PromotionResult;
+import net.luckperms.api.track.Track;
+
+import java.util.Collections;
+import java.util.List;
+
+// Read-only track, promotions and edits aren't part of any benchmark.
+final class FakeTrack implements Track
+{
+    private final String name;
+    private final List<String> groups;
+
+    FakeTrack(final String name, final List<String> groups) {
+        this.name = name;
+        this.groups = Collections.unmodifiableList(groups);
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public List<String> getGroups() {
+        return this.groups;
+    }
+
+    @Override
+    public String getNext(final Group current) {
+        final int position = this.groups.indexOf(current.getName());
+        return (position < 0 || position + 1 == this.groups.size()) ? null : this.groups.get(position + 1);
+    }
+
+    @Override
+    public String getPrevious(final Group current) {
+        final int position = this.groups.indexOf(current.getName());
+        return (position <= 0) ? null : this.groups.get(position - 1);
+    }
+
+    @Override
+    public PromotionResult promote(final User user, final ContextSet contextSet) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public DemotionResult demote(final User user, final ContextSet contextSet) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public DataMutateResult appendGroup(final Group group) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public DataMutateResult insertGroup(final Group group, final int position) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public DataMutateResult removeGroup(final Group group) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public DataMutateResult removeGroup(final String group) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean containsGroup(final Group group) {
+        return this.containsGroup(group.getName());
+    }
+
+    @Override
+    public boolean containsGroup(final String group) {
+        return this.groups.contains(group);
+    }
+
+    @Override
+    public void clearGroups() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String toString() {
+        return "FakeTrack(" + this.name + ")";
+    }
+}
@@ -0,0 +1,66 @@
+package com.kxnrl.papi.luckperms;
+
+import net.luckperms.api.cacheddata.CachedDataManager;
+import net.luckperms.api.model.data.DataMutateResult;
+import net.luckperms.api.model.user.User;
+import net.luckperms.api.node.Node;
+import net.luckperms.api.query.QueryOptions;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+// The inherited view is precomputed, whatever options it is resolved with.
+final class FakeUser extends FakeHolder implements User
+{
+    private final UUID uuid;
+    private final String username;
+    private final String primaryGroup;
+    private final Collection<Node> inherited;
+    private final CachedDataManager cachedData;
+
+    FakeUser(final UUID uuid, final String username, final String primaryGroup, final List<Node> nodes, final List<Node> inherited, final CachedDataManager cachedData) {
+        super(username, nodes);
+        this.uuid = uuid;
+        this.username = username;
+        this.primaryGroup = primaryGroup;
+        this.inherited = Collections.unmodifiableList(inherited);
+        this.cachedData = cachedData;
+    }
+
+    @Override
+    public UUID getUniqueId() {
+        return this.uuid;
+    }
+
+    @Override
+    public String getUsername() {
+        return this.username;
+    }
+
+    @Override
+    public String getPrimaryGroup() {
+        return this.primaryGroup;
+    }
+
+    @Override
+    public DataMutateResult setPrimaryGroup(final String group) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public CachedDataManager getCachedData() {
+        return this.cachedData;
+    }
+
+    @Override
+    public Collection<Node> resolveInheritedNodes(final QueryOptions queryOptions) {
+        return this.inherited;
+    }
+
+    @Override
+    public String toString() {
+        return "FakeUser(" + this.username + ")";
+    }
+}
@@ -0,0 +1,83 @@
+package com.kxnrl.papi.luckperms;
+
+import net.luckperms.api.model.PlayerSaveResult;
+import net.luckperms.api.model.user.User;
+import net.luckperms.api.model.user.UserManager;
+import net.luckperms.api.node.HeldNode;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+// Knows a single loaded user, anyone else is unknown to LuckPerms.
+final class FakeUserManager implements UserManager
+{
+    private final User user;
+    private final CompletableFuture<User> loaded;
+
+    FakeUserManager(final User user) {
+        this.user = user;
+        this.loaded = CompletableFuture.completedFuture(user);
+    }
+
+    @Override
+    public CompletableFuture<User> loadUser(final UUID uuid, final String username) {
+        return this.user.getUniqueId().equals(uuid) ? this.loaded : CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<UUID> lookupUniqueId(final String username) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public CompletableFuture<String> lookupUsername(final UUID uuid) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public CompletableFuture<Void> saveUser(final User user) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public CompletableFuture<PlayerSaveResult> savePlayerData(final UUID uuid, final String username) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public CompletableFuture<Set<UUID>> getUniqueUsers() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public CompletableFuture<List<HeldNode<UUID>>> getWithPermission(final String permission) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public User getUser(final UUID uuid) {
+        return this.user.getUniqueId().equals(uuid) ? this.user : null;
+    }
+
+    @Override
+    public User getUser(final String username) {
+        return this.user.getUsername().equalsIgnoreCase(username) ? this.user : null;
+    }
+
+    @Override
+    public Set<User> getLoadedUsers() {
+        return Collections.singleton(this.user);
+    }
+
+    @Override
+    public boolean isLoaded(final UUID uuid) {
+        return this.user.getUniqueId().equals(uuid);
+    }
+
+    @Override
+    public void cleanupUser(final User user) {
+    }
+}
@@ -0,0 +1,62 @@
+package com.kxnrl.papi.luckperms;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+// Dynamic stand-ins for setup-time API objects and the Player, only the methods a benchmark touches are answered.
+final class Fakes
+{
+    // keeps no-arg calls such as Player.getUniqueId allocation-free
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private Fakes() {
+    }
+
+    static <T> Builder<T> of(final Class<T> type) {
+        return new Builder<T>(type);
+    }
+
+    static final class Builder<T>
+    {
+        private final Class<T> type;
+        private final Map<String, Function<Object[], Object>> methods;
+
+        private Builder(final Class<T> type) {
+            this.type = type;
+            this.methods = new HashMap<String, Function<Object[], Object>>();
+        }
+
+        Builder<T> on(final String method, final Function<Object[], Object> answer) {
+            this.methods.put(method, answer);
+            return this;
+        }
+
+        Builder<T> returning(final String method, final Object value) {
+            return this.on(method, args -> value);
+        }
+
+        T build() {
+            final Map<String, Function<Object[], Object>> methods = new HashMap<String, Function<Object[], Object>>(this.methods);
+            final String name = this.type.getSimpleName();
+            final Object proxy = Proxy.newProxyInstance(this.type.getClassLoader(), new Class<?>[] { this.type }, (self, method, args) -> {
+                final Function<Object[], Object> answer = methods.get(method.getName());
+                if (answer != null) {
+                    return answer.apply((args == null) ? NO_ARGS : args);
+                }
+                switch (method.getName()) {
+                    case "equals":
+                        return self == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(self);
+                    case "toString":
+                        return "Fake" + name;
+                    default:
+                        throw new UnsupportedOperationException(name + "." + method.getName());
+                }
+            });
+            return this.type.cast(proxy);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.kxnrl.papi.luckperms;
+
+import org.openjdk.jmh.annotations.*;
+import org.spongepowered.api.entity.living.player.Player;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * One token per registered placeholder id against the in-memory LuckPerms.
+ *
+ *   index - a new tick after the player's LuckPerms data changed, their indexes are rebuilt before the handler runs
+ *   cold  - a new tick with the rendered values flushed, the handler runs against indexes that are already built
+ *   warm  - a repeated render within the same tick, served from the resolved value cache
+ *
+ * Run with -prof gc to get the allocation rate next to ops/s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlaceholderBenchmark
+{
+    @Param({
+            "context_world",
+            "groups",
+            "primary_group_name",
+            "has_permission_perm.0",
+            "inherits_permission_g1.perm.0",
+            "check_permission_perm.0",
+            "in_group_g0",
+            "inherits_group_g1",
+            "on_track_main",
+            "has_groups_on_track_main",
+            "highest_group_by_weight",
+            "lowest_group_by_weight",
+            "first_group_on_tracks_main",
+            "last_group_on_tracks_main",
+            "expiry_time_temp.0",
+            "inherited_expiry_time_temp.0",
+            "group_expiry_time_vip",
+            "prefix",
+            "suffix",
+            "meta_rank",
+            "prefix_element_highest",
+            "suffix_element_highest"
+    })
+    public String token;
+
+    @Param({"index", "cold", "warm"})
+    public String cache;
+
+    @Param("200")
+    public int nodes;
+
+    @Param("5")
+    public int depth;
+
+    @Param("10")
+    public int temporaryNodes;
+
+    @Param("10")
+    public int trackSize;
+
+    private BenchmarkPlatform platform;
+    private PAPIProvider provider;
+    private Player player;
+    private UUID uuid;
+    private boolean index;
+    private boolean cold;
+
+    @Setup
+    public void setup() {
+        final FakeLuckPerms luckPerms = FakeLuckPerms.create(this.nodes, this.depth, this.temporaryNodes, this.trackSize);
+        this.platform = new BenchmarkPlatform();
+        this.provider = new PAPIProvider(this.platform, luckPerms);
+        this.player = luckPerms.player();
+        this.uuid = this.player.getUniqueId();
+        this.index = "index".equals(this.cache);
+        this.cold = "cold".equals(this.cache);
+        if (this.provider.onPlaceholderRequest(this.player, this.token) == null) {
+            throw new IllegalStateException("Unknown placeholder " + this.token);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.provider.close();
+    }
+
+    @Benchmark
+    public String resolve() {
+        if (this.index) {
+            this.platform.nextTick();
+            this.provider.invalidate(this.uuid);
+        }
+        else if (this.cold) {
+            this.platform.nextTick();
+            this.provider.invalidateValues(this.uuid);
+        }
+        return this.provider.onPlaceholderRequest(this.player, this.token);
+    }
+}
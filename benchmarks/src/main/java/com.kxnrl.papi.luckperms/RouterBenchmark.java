@@ -0,0 +1,69 @@
+package com.kxnrl.papi.luckperms;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// The compiled trie against the map scan PAPIProvider used before it.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouterBenchmark
+{
+    private static final String[] STATIC_IDS = {
+            "groups", "primary_group_name", "highest_group_by_weight", "lowest_group_by_weight", "prefix", "suffix"
+    };
+    private static final String[] DYNAMIC_IDS = {
+            "context", "has_permission", "inherits_permission", "check_permission", "in_group", "inherits_group",
+            "on_track", "has_groups_on_track", "first_group_on_tracks", "last_group_on_tracks", "expiry_time",
+            "inherited_expiry_time", "group_expiry_time", "meta", "prefix_element", "suffix_element"
+    };
+
+    @Param({"prefix", "suffix_element_highest", "inherited_expiry_time_temp.0", "unknown_token"})
+    public String token;
+
+    private Map<String, Boolean> map;
+    private PlaceholderTrie<String> trie;
+
+    @Setup
+    public void setup() {
+        this.map = new HashMap<String, Boolean>();
+        final PlaceholderTrie.Builder<String> builder = PlaceholderTrie.builder();
+        for (final String id : STATIC_IDS) {
+            this.map.put(id, false);
+            builder.add(id, id, false);
+        }
+        for (final String id : DYNAMIC_IDS) {
+            this.map.put(id + "_", true);
+            builder.add(id + "_", id, true);
+        }
+        this.trie = builder.build();
+    }
+
+    @Benchmark
+    public Object trie() {
+        return this.trie.lookup(this.token);
+    }
+
+    @Benchmark
+    public Object mapScan() {
+        final String placeHolder = this.token.toLowerCase();
+        for (final Map.Entry<String, Boolean> entry : this.map.entrySet()) {
+            final String id = entry.getKey();
+            if (entry.getValue()) {
+                if (placeHolder.startsWith(id) && placeHolder.length() > id.length()) {
+                    return placeHolder.substring(id.length());
+                }
+            }
+            else if (placeHolder.equals(id)) {
+                return id;
+            }
+        }
+        return null;
+    }
+}
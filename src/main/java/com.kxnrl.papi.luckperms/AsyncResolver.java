@@ -0,0 +1,164 @@
+package com.kxnrl.papi.luckperms;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import net.luckperms.api.query.QueryOptions;
+import org.spongepowered.api.entity.living.player.Player;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Keeps the tokens players actually use resolved ahead of time, readers only ever see published values.
+final class AsyncResolver
+{
+    private static final int MAX_TOKENS = 256;
+
+    private final PAPIProvider provider;
+    private final PlaceholderStats stats;
+    private final ExecutorService executor;
+    private final ScheduledFuture<?> sweeper;
+    private final Map<UUID, Table> tables;
+
+    AsyncResolver(final PAPIProvider provider, final PlaceholderStats stats, final ScheduledExecutorService scheduler) {
+        this.provider = provider;
+        this.stats = stats;
+        this.executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("luckperms-placeholders-async")
+                .setDaemon(true)
+                .build());
+        this.tables = new ConcurrentHashMap<UUID, Table>();
+        this.sweeper = scheduler.scheduleAtFixedRate(this::sweep, 1L, 1L, TimeUnit.SECONDS);
+    }
+
+    String get(final Player player, final String placeholder) {
+        final boolean timed = this.stats.isEnabled();
+        final long start = timed ? System.nanoTime() : 0L;
+        final Table table = this.tables.computeIfAbsent(player.getUniqueId(), u -> new Table(player, this.provider.queryOptions(player)));
+        if (table.player != player) {
+            table.player = player;
+        }
+        // context calculators don't all signal their changes, so compare the options once per tick
+        final int tick = this.provider.currentTick();
+        if (table.checkedTick != tick) {
+            table.checkedTick = tick;
+            if (!table.queryOptions.equals(this.provider.queryOptions(player))) {
+                this.provider.contextChanged(player.getUniqueId());
+            }
+        }
+        final Published published = table.values.get(placeholder);
+        if (published != null) {
+            if (published.deadline <= System.currentTimeMillis()) {
+                this.refresh(table);
+            }
+            // the values were resolved and recorded on the executor, only the read itself is counted here
+            if (timed) {
+                this.stats.recordAsyncRead(published.id, System.nanoTime() - start);
+            }
+            return published.value;
+        }
+        // first sighting of this token for the player, resolve on the calling thread and start tracking it
+        final long now = System.currentTimeMillis();
+        final String value = this.provider.resolveNow(player, placeholder);
+        if (value != null && table.values.size() < MAX_TOKENS) {
+            table.values.put(placeholder, this.publish(placeholder, value, now));
+        }
+        return value;
+    }
+
+    void refresh(final UUID uuid) {
+        final Table table = this.tables.get(uuid);
+        if (table != null) {
+            this.refresh(table);
+        }
+    }
+
+    void refreshAll() {
+        this.tables.values().forEach(this::refresh);
+    }
+
+    void remove(final UUID uuid) {
+        this.tables.remove(uuid);
+    }
+
+    void close() {
+        this.sweeper.cancel(false);
+        this.executor.shutdownNow();
+        this.tables.clear();
+    }
+
+    private void sweep() {
+        final long now = System.currentTimeMillis();
+        for (final Table table : this.tables.values()) {
+            for (final Published published : table.values.values()) {
+                if (published.deadline <= now) {
+                    this.refresh(table);
+                    break;
+                }
+            }
+        }
+    }
+
+    // Coalesces refresh requests, a table is queued at most once at a time.
+    private void refresh(final Table table) {
+        if (!table.queued.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            this.executor.execute(() -> this.recompute(table));
+        }
+        catch (RejectedExecutionException ex) {
+            table.queued.set(false);
+        }
+    }
+
+    private void recompute(final Table table) {
+        table.queued.set(false);
+        final Player player = table.player;
+        table.queryOptions = this.provider.queryOptions(player);
+        final long now = System.currentTimeMillis();
+        for (final String placeholder : table.values.keySet()) {
+            final String value = this.provider.resolveNow(player, placeholder);
+            if (value == null) {
+                table.values.remove(placeholder);
+            }
+            else {
+                table.values.put(placeholder, this.publish(placeholder, value, now));
+            }
+        }
+    }
+
+    private Published publish(final String placeholder, final String value, final long now) {
+        return new Published(this.provider.id(placeholder), value, this.provider.deadline(placeholder, now));
+    }
+
+    private static final class Table
+    {
+        private volatile Player player;
+        private final Map<String, Published> values;
+        private final AtomicBoolean queued;
+        // options the published values were computed under
+        private volatile QueryOptions queryOptions;
+        private volatile int checkedTick;
+
+        private Table(final Player player, final QueryOptions queryOptions) {
+            this.player = player;
+            this.queryOptions = queryOptions;
+            this.values = new ConcurrentHashMap<String, Published>();
+            this.queued = new AtomicBoolean();
+        }
+    }
+
+    private static final class Published
+    {
+        private final String id;
+        private final String value;
+        private final long deadline;
+
+        private Published(final String id, final String value, final long deadline) {
+            this.id = id;
+            this.value = value;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.kxnrl.papi.luckperms;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.kxnrl.papi.luckperms.structures.IPlaceholderListener;
+import com.kxnrl.papi.luckperms.structures.IPlaceholderSubscription;
+import net.luckperms.api.query.QueryOptions;
+import org.spongepowered.api.entity.living.player.Player;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Recomputes subscribed tokens when LuckPerms data changes or a value expires, listeners only hear about real changes.
+final class ChangeNotifier
+{
+    private final PAPIProvider provider;
+    private final ExecutorService executor;
+    private final ScheduledFuture<?> sweeper;
+    private final Map<UUID, Subscriber> subscribers;
+
+    ChangeNotifier(final PAPIProvider provider, final ScheduledExecutorService scheduler) {
+        this.provider = provider;
+        this.executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("luckperms-placeholders-notify")
+                .setDaemon(true)
+                .build());
+        this.subscribers = new ConcurrentHashMap<UUID, Subscriber>();
+        this.sweeper = scheduler.scheduleAtFixedRate(this::sweep, 1L, 1L, TimeUnit.SECONDS);
+    }
+
+    IPlaceholderSubscription subscribe(final Player player, final Set<String> placeholders, final IPlaceholderListener listener) {
+        final Subscription subscription = new Subscription(player.getUniqueId(), placeholders, listener);
+        final Subscriber subscriber = this.subscribers.compute(player.getUniqueId(), (uuid, existing) -> {
+            final Subscriber s = (existing == null) ? new Subscriber(player) : existing;
+            s.player = player;
+            s.subscriptions.add(subscription);
+            return s;
+        });
+        // the first round delivers every token, later ones only what changed
+        this.refresh(subscriber);
+        return subscription;
+    }
+
+    void refresh(final UUID uuid) {
+        final Subscriber subscriber = this.subscribers.get(uuid);
+        if (subscriber != null) {
+            this.refresh(subscriber);
+        }
+    }
+
+    void refreshAll() {
+        this.subscribers.values().forEach(this::refresh);
+    }
+
+    void remove(final UUID uuid) {
+        final Subscriber subscriber = this.subscribers.remove(uuid);
+        if (subscriber != null) {
+            subscriber.subscriptions.forEach(s -> s.closed = true);
+        }
+    }
+
+    void close() {
+        this.sweeper.cancel(false);
+        this.executor.shutdownNow();
+        this.subscribers.values().forEach(s -> s.subscriptions.forEach(sub -> sub.closed = true));
+        this.subscribers.clear();
+    }
+
+    // Only compares stored deadlines and query options, nothing is resolved unless one of them has moved.
+    private void sweep() {
+        final long now = System.currentTimeMillis();
+        for (final Subscriber subscriber : this.subscribers.values()) {
+            // context calculators don't all signal their changes, static tokens would otherwise keep the old world's values
+            final QueryOptions queryOptions = subscriber.queryOptions;
+            if (queryOptions != null && !queryOptions.equals(this.provider.queryOptions(subscriber.player))) {
+                this.provider.contextChanged(subscriber.player.getUniqueId());
+                continue;
+            }
+            for (final Subscription subscription : subscriber.subscriptions) {
+                if (subscription.deadline <= now) {
+                    this.refresh(subscriber);
+                    break;
+                }
+            }
+        }
+    }
+
+    private void refresh(final Subscriber subscriber) {
+        if (!subscriber.queued.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            this.executor.execute(() -> this.recompute(subscriber));
+        }
+        catch (RejectedExecutionException ex) {
+            subscriber.queued.set(false);
+        }
+    }
+
+    private void recompute(final Subscriber subscriber) {
+        subscriber.queued.set(false);
+        final Player player = subscriber.player;
+        subscriber.queryOptions = this.provider.queryOptions(player);
+        final long now = System.currentTimeMillis();
+        // subscriptions sharing a token resolve it once per round
+        final Map<String, String> resolved = new HashMap<String, String>();
+        for (final Subscription subscription : subscriber.subscriptions) {
+            if (subscription.closed) {
+                continue;
+            }
+            Map<String, String> changed = null;
+            long deadline = ValueCache.NEVER;
+            for (int i = 0; i < subscription.placeholders.size(); ++i) {
+                final String placeholder = subscription.placeholders.get(i);
+                final String value = resolved.computeIfAbsent(placeholder, p -> {
+                    final String result = this.provider.resolveNow(player, p);
+                    return (result == null) ? "" : result;
+                });
+                deadline = Math.min(deadline, this.provider.deadline(placeholder, now));
+                if (!value.equals(subscription.last[i])) {
+                    subscription.last[i] = value;
+                    if (changed == null) {
+                        changed = new LinkedHashMap<String, String>();
+                    }
+                    changed.put(placeholder, value);
+                }
+            }
+            subscription.deadline = deadline;
+            if (changed != null) {
+                try {
+                    subscription.listener.onPlaceholdersChanged(player, Collections.unmodifiableMap(changed));
+                }
+                catch (RuntimeException ex) {
+                    ex.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private static final class Subscriber
+    {
+        private volatile Player player;
+        private final List<Subscription> subscriptions;
+        private final AtomicBoolean queued;
+        // options the last round was computed under, null until it has run
+        private volatile QueryOptions queryOptions;
+
+        private Subscriber(final Player player) {
+            this.player = player;
+            this.subscriptions = new CopyOnWriteArrayList<Subscription>();
+            this.queued = new AtomicBoolean();
+        }
+    }
+
+    private final class Subscription implements IPlaceholderSubscription
+    {
+        private final UUID player;
+        private final List<String> placeholders;
+        private final IPlaceholderListener listener;
+        // last rendered value per token, only touched by the notifier thread
+        private final String[] last;
+        private volatile long deadline;
+        private volatile boolean closed;
+
+        private Subscription(final UUID player, final Set<String> placeholders, final IPlaceholderListener listener) {
+            this.player = player;
+            this.placeholders = ImmutableList.copyOf(placeholders);
+            this.listener = listener;
+            this.last = new String[this.placeholders.size()];
+            this.deadline = ValueCache.NEVER;
+        }
+
+        @Override
+        public UUID getPlayer() {
+            return this.player;
+        }
+
+        @Override
+        public List<String> getPlaceholders() {
+            return this.placeholders;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return this.closed;
+        }
+
+        @Override
+        public void close() {
+            this.closed = true;
+            ChangeNotifier.this.subscribers.computeIfPresent(this.player, (uuid, subscriber) -> {
+                subscriber.subscriptions.remove(this);
+                return subscriber.subscriptions.isEmpty() ? null : subscriber;
+            });
+        }
+    }
+}
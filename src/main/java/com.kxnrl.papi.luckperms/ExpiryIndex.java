@@ -0,0 +1,91 @@
+package com.kxnrl.papi.luckperms;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import net.luckperms.api.context.ContextSet;
+import net.luckperms.api.context.ImmutableContextSet;
+import net.luckperms.api.node.Node;
+import net.luckperms.api.node.NodeType;
+
+import java.util.*;
+
+final class ExpiryIndex
+{
+    static final long NONE = -1L;
+
+    private final Map<String, List<Entry>> permissions;
+    private final Map<String, List<Entry>> groups;
+    private final long nextExpiry;
+
+    private ExpiryIndex(final Map<String, List<Entry>> permissions, final Map<String, List<Entry>> groups, final long nextExpiry) {
+        this.permissions = permissions;
+        this.groups = groups;
+        this.nextExpiry = nextExpiry;
+    }
+
+    static ExpiryIndex build(final Collection<Node> nodes, final long now) {
+        final Map<String, List<Entry>> permissions = new HashMap<String, List<Entry>>();
+        final Map<String, List<Entry>> groups = new HashMap<String, List<Entry>>();
+        long nextExpiry = NONE;
+        for (final Node node : nodes) {
+            if (!node.hasExpiry()) {
+                continue;
+            }
+            final long expiry = node.getExpiry().toEpochMilli();
+            if (expiry <= now) {
+                continue;
+            }
+            final Entry entry = new Entry(node.getContexts(), expiry);
+            permissions.computeIfAbsent(node.getKey(), k -> new ArrayList<Entry>()).add(entry);
+            if (NodeType.INHERITANCE.matches(node)) {
+                groups.computeIfAbsent(NodeType.INHERITANCE.cast(node).getGroupName().toLowerCase(), k -> new ArrayList<Entry>()).add(entry);
+            }
+            if (nextExpiry == NONE || expiry < nextExpiry) {
+                nextExpiry = expiry;
+            }
+        }
+        return new ExpiryIndex(freeze(permissions), freeze(groups), nextExpiry);
+    }
+
+    private static Map<String, List<Entry>> freeze(final Map<String, List<Entry>> entries) {
+        final ImmutableMap.Builder<String, List<Entry>> builder = ImmutableMap.builder();
+        entries.forEach((key, list) -> builder.put(key, ImmutableList.copyOf(list)));
+        return builder.build();
+    }
+
+    // Expiry in epoch millis of the first live node with this key whose contexts are satisfied, or NONE.
+    long permission(final String key, final ImmutableContextSet context, final long now) {
+        return find(this.permissions.get(key), context, now);
+    }
+
+    long group(final String groupName, final ImmutableContextSet context, final long now) {
+        return find(this.groups.get(groupName.toLowerCase()), context, now);
+    }
+
+    long nextExpiry() {
+        return this.nextExpiry;
+    }
+
+    private static long find(final List<Entry> entries, final ImmutableContextSet context, final long now) {
+        if (entries == null) {
+            return NONE;
+        }
+        for (final Entry entry : entries) {
+            if (entry.expiry > now && entry.contexts.isSatisfiedBy(context)) {
+                return entry.expiry;
+            }
+        }
+        return NONE;
+    }
+
+    private static final class Entry
+    {
+        private final ContextSet contexts;
+        private final long expiry;
+
+        private Entry(final ContextSet contexts, final long expiry) {
+            this.contexts = contexts;
+            this.expiry = expiry;
+        }
+    }
+}
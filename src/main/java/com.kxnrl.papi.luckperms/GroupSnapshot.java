@@ -0,0 +1,131 @@
+package com.kxnrl.papi.luckperms;
+
+import com.google.common.collect.ImmutableMap;
+import net.luckperms.api.LuckPerms;
+import net.luckperms.api.model.group.Group;
+import net.luckperms.api.track.Track;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Immutable copy of every loaded group and track, placeholders read it instead of the LuckPerms managers.
+final class GroupSnapshot
+{
+    private static final BitSet NO_TRACKS = new BitSet();
+
+    private final long version;
+    private final Map<String, String> displayNames;
+    private final Map<String, Integer> weights;
+    private final Map<String, TrackEntry> tracks;
+    private final Map<String, BitSet> memberships;
+
+    private GroupSnapshot(final long version, final Map<String, String> displayNames, final Map<String, Integer> weights, final Map<String, TrackEntry> tracks, final Map<String, BitSet> memberships) {
+        this.version = version;
+        this.displayNames = displayNames;
+        this.weights = weights;
+        this.tracks = tracks;
+        this.memberships = memberships;
+    }
+
+    static GroupSnapshot build(final long version, final LuckPerms luckPerms) {
+        final ImmutableMap.Builder<String, String> displayNames = ImmutableMap.builder();
+        final ImmutableMap.Builder<String, Integer> weights = ImmutableMap.builder();
+        for (final Group group : luckPerms.getGroupManager().getLoadedGroups()) {
+            final String name = group.getName().toLowerCase();
+            displayNames.put(name, group.getFriendlyName());
+            weights.put(name, group.getWeight().orElse(0));
+        }
+        final ImmutableMap.Builder<String, TrackEntry> tracks = ImmutableMap.builder();
+        final Map<String, BitSet> memberships = new HashMap<String, BitSet>();
+        int id = 0;
+        for (final Track track : luckPerms.getTrackManager().getLoadedTracks()) {
+            final TrackEntry entry = new TrackEntry(id, track.getGroups());
+            tracks.put(track.getName().toLowerCase(), entry);
+            for (final String group : entry.groups) {
+                memberships.computeIfAbsent(group.toLowerCase(), g -> new BitSet()).set(id);
+            }
+            ++id;
+        }
+        return new GroupSnapshot(version, displayNames.build(), weights.build(), tracks.build(), ImmutableMap.copyOf(memberships));
+    }
+
+    // Unknown groups keep the name they were asked with, same as before the snapshot existed.
+    String displayName(final String groupName) {
+        final String displayName = this.displayNames.get(groupName.toLowerCase());
+        return (displayName == null) ? groupName : displayName;
+    }
+
+    // Null when the group isn't loaded.
+    Integer weight(final String groupName) {
+        return this.weights.get(groupName.toLowerCase());
+    }
+
+    TrackEntry track(final String trackName) {
+        return this.tracks.get(trackName.toLowerCase());
+    }
+
+    boolean onTrack(final String groupName, final TrackEntry track) {
+        return this.memberships.getOrDefault(groupName.toLowerCase(), NO_TRACKS).get(track.id);
+    }
+
+    static final class TrackEntry
+    {
+        private final int id;
+        private final String[] groups;
+        private final String[] permissions;
+
+        private TrackEntry(final int id, final List<String> groups) {
+            this.id = id;
+            this.groups = groups.toArray(new String[0]);
+            this.permissions = new String[this.groups.length];
+            for (int i = 0; i < this.groups.length; ++i) {
+                this.permissions[i] = "group." + this.groups[i];
+            }
+        }
+
+        int size() {
+            return this.groups.length;
+        }
+
+        String group(final int position) {
+            return this.groups[position];
+        }
+
+        // "group.<name>" for the group at the position, built once per snapshot.
+        String permission(final int position) {
+            return this.permissions[position];
+        }
+    }
+
+    // Events only bump the version, the next reader rebuilds, so a burst of changes costs one rebuild.
+    static final class Holder
+    {
+        private final LuckPerms luckPerms;
+        private final AtomicLong version;
+        private volatile GroupSnapshot snapshot;
+
+        Holder(final LuckPerms luckPerms) {
+            this.luckPerms = luckPerms;
+            this.version = new AtomicLong();
+        }
+
+        GroupSnapshot current() {
+            final long version = this.version.get();
+            final GroupSnapshot snapshot = this.snapshot;
+            if (snapshot != null && snapshot.version == version) {
+                return snapshot;
+            }
+            // a snapshot built while an event bumps the version is stale on arrival and gets rebuilt by the next reader
+            final GroupSnapshot built = GroupSnapshot.build(version, this.luckPerms);
+            this.snapshot = built;
+            return built;
+        }
+
+        void invalidate() {
+            this.version.incrementAndGet();
+        }
+    }
+}
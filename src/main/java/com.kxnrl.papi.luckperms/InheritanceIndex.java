@@ -0,0 +1,127 @@
+package com.kxnrl.papi.luckperms;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import net.luckperms.api.context.ImmutableContextSet;
+import net.luckperms.api.model.user.User;
+import net.luckperms.api.node.Node;
+import net.luckperms.api.node.NodeType;
+import net.luckperms.api.node.types.InheritanceNode;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+final class InheritanceIndex
+{
+    private static final int MAX_VIEWS = 16;
+
+    // each distinct context set once, then every inherited group in node order with the position of its contexts
+    private final List<ImmutableContextSet> contexts;
+    private final String[] groupNames;
+    private final int[] contextOf;
+    private final Set<String> names;
+    private final Map<String, Integer> weights;
+    private final Map<ImmutableContextSet, View> views;
+
+    private InheritanceIndex(final List<ImmutableContextSet> contexts, final String[] groupNames, final int[] contextOf, final Set<String> names, final Map<String, Integer> weights) {
+        this.contexts = contexts;
+        this.groupNames = groupNames;
+        this.contextOf = contextOf;
+        this.names = names;
+        this.weights = weights;
+        this.views = new ConcurrentHashMap<ImmutableContextSet, View>();
+    }
+
+    static InheritanceIndex build(final User user, final GroupSnapshot snapshot) {
+        final Map<ImmutableContextSet, Integer> contexts = new LinkedHashMap<ImmutableContextSet, Integer>();
+        final List<String> groupNames = new ArrayList<String>();
+        final List<Integer> contextOf = new ArrayList<Integer>();
+        final ImmutableSet.Builder<String> names = ImmutableSet.builder();
+        final Map<String, Integer> weights = new HashMap<String, Integer>();
+        for (final Node node : user.getNodes()) {
+            if (!NodeType.INHERITANCE.matches(node)) {
+                continue;
+            }
+            final InheritanceNode inheritance = NodeType.INHERITANCE.cast(node);
+            final String groupName = inheritance.getGroupName();
+            groupNames.add(groupName);
+            contextOf.add(contexts.computeIfAbsent(inheritance.getContexts(), c -> contexts.size()));
+            names.add(groupName.toLowerCase());
+            final Integer weight = snapshot.weight(groupName);
+            if (weight != null) {
+                weights.put(groupName, weight);
+            }
+        }
+        return new InheritanceIndex(ImmutableList.copyOf(contexts.keySet()), groupNames.toArray(new String[0]),
+                contextOf.stream().mapToInt(Integer::intValue).toArray(), names.build(), ImmutableMap.copyOf(weights));
+    }
+
+    // Lowercase names of every directly inherited group, regardless of context.
+    Set<String> names() {
+        return this.names;
+    }
+
+    View view(final ImmutableContextSet context) {
+        final View view = this.views.get(context);
+        if (view != null) {
+            return view;
+        }
+        if (this.views.size() >= MAX_VIEWS) {
+            this.views.clear();
+        }
+        return this.views.computeIfAbsent(context, this::createView);
+    }
+
+    private View createView(final ImmutableContextSet context) {
+        final ImmutableList.Builder<String> groups = ImmutableList.builder();
+        final Set<String> names = new HashSet<String>();
+        final List<String> byWeight = new ArrayList<String>();
+        final boolean[] satisfied = new boolean[this.contexts.size()];
+        for (int i = 0; i < satisfied.length; i++) {
+            satisfied[i] = this.contexts.get(i).isSatisfiedBy(context);
+        }
+        for (int i = 0; i < this.groupNames.length; i++) {
+            if (!satisfied[this.contextOf[i]]) {
+                continue;
+            }
+            final String groupName = this.groupNames[i];
+            groups.add(groupName);
+            if (names.add(groupName.toLowerCase()) && this.weights.containsKey(groupName)) {
+                byWeight.add(groupName);
+            }
+        }
+        // heaviest first, ties broken by name so the result never depends on node order
+        byWeight.sort(Comparator.<String>comparingInt(this.weights::get).reversed().thenComparing(Comparator.naturalOrder()));
+        return new View(groups.build(), ImmutableSet.copyOf(names), ImmutableList.copyOf(byWeight));
+    }
+
+    static final class View
+    {
+        private final List<String> groups;
+        private final Set<String> names;
+        private final List<String> byWeight;
+
+        private View(final List<String> groups, final Set<String> names, final List<String> byWeight) {
+            this.groups = groups;
+            this.names = names;
+            this.byWeight = byWeight;
+        }
+
+        List<String> groups() {
+            return this.groups;
+        }
+
+        boolean inGroup(final String groupName) {
+            return this.names.contains(groupName.toLowerCase());
+        }
+
+        String highestByWeight() {
+            return this.byWeight.isEmpty() ? null : this.byWeight.get(0);
+        }
+
+        String lowestByWeight() {
+            return this.byWeight.isEmpty() ? null : this.byWeight.get(this.byWeight.size() - 1);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.kxnrl.papi.luckperms;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Log-linear buckets (4 per power of two) over LongAdders, recording never locks and threads rarely share a cell.
+final class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final LongAdder[] counts;
+    private final LongAdder total;
+
+    LatencyHistogram() {
+        this.counts = new LongAdder[BUCKETS];
+        for (int i = 0; i < BUCKETS; ++i) {
+            this.counts[i] = new LongAdder();
+        }
+        this.total = new LongAdder();
+    }
+
+    void record(final long nanos) {
+        this.counts[index(Math.max(0L, nanos))].increment();
+        this.total.add(nanos);
+    }
+
+    long count() {
+        long count = 0L;
+        for (final LongAdder adder : this.counts) {
+            count += adder.sum();
+        }
+        return count;
+    }
+
+    long totalNanos() {
+        return this.total.sum();
+    }
+
+    // Upper bound of the bucket holding the requested percentile.
+    long percentile(final double percentile) {
+        final long count = this.count();
+        if (count == 0L) {
+            return 0L;
+        }
+        final long target = Math.max(1L, (long)Math.ceil(count * percentile / 100.0));
+        long seen = 0L;
+        for (int i = 0; i < BUCKETS; ++i) {
+            seen += this.counts[i].sum();
+            if (seen >= target) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    void reset() {
+        for (final LongAdder adder : this.counts) {
+            adder.reset();
+        }
+        this.total.reset();
+    }
+
+    private static int index(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int)value;
+        }
+        final int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        final int sub = (int)(value >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBound(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int magnitude = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        final long sub = index % SUB_BUCKETS;
+        final long width = 1L << (magnitude - SUB_BUCKET_BITS);
+        return (1L << magnitude) + (sub + 1L) * width - 1L;
+    }
+}
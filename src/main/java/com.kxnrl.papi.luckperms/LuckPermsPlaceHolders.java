@@ -1,18 +1,27 @@
 package com.kxnrl.papi.luckperms;
 
+import com.kxnrl.papi.luckperms.structures.IPlaceholderFormatter;
 import com.kxnrl.papi.luckperms.structures.IPlaceholderPlatform;
-import me.rojo8399.placeholderapi.Placeholder;
+import me.rojo8399.placeholderapi.ExpansionBuilder;
 import me.rojo8399.placeholderapi.PlaceholderService;
-import me.rojo8399.placeholderapi.Source;
-import me.rojo8399.placeholderapi.Token;
 import net.luckperms.api.LuckPerms;
+import com.google.common.collect.ImmutableMap;
 import org.spongepowered.api.Sponge;
+import org.spongepowered.api.command.CommandResult;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.command.args.CommandContext;
+import org.spongepowered.api.command.args.GenericArguments;
+import org.spongepowered.api.command.spec.CommandSpec;
 import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.entity.living.player.User;
 import org.spongepowered.api.event.Listener;
 import org.spongepowered.api.event.game.state.GameStartedServerEvent;
+import org.spongepowered.api.event.game.state.GameStoppingServerEvent;
+import org.spongepowered.api.event.network.ClientConnectionEvent;
 import org.spongepowered.api.plugin.Dependency;
 import org.spongepowered.api.plugin.Plugin;
 import org.spongepowered.api.service.ProviderRegistration;
+import org.spongepowered.api.text.Text;
 
 import javax.annotation.Nullable;
 import java.util.Optional;
@@ -33,69 +42,146 @@ import java.util.Optional;
 public class LuckPermsPlaceHolders implements IPlaceholderPlatform
 {
     PAPIProvider provider;
+    private final String loadingPlaceholder = System.getProperty("luckperms.placeholders.loading", "");
+    private final IPlaceholderFormatter formatter = createFormatter();
 
     @Listener
     public void onServerStart(final GameStartedServerEvent event) {
-        final Optional<ProviderRegistration<PlaceholderService>> PAPIProvider = (Optional<ProviderRegistration<PlaceholderService>>)Sponge.getServiceManager().getRegistration((Class)PlaceholderService.class);
-        if (PAPIProvider.isPresent()) {
-            final PlaceholderService api = (PlaceholderService)PAPIProvider.get().getProvider();
-            api.loadAll((Object)this, (Object)this).forEach(builder -> {
-                builder.author("Kyle");
-                builder.version("1.0.0.0");
-                try {
-                    builder.buildAndRegister();
-                }
-                catch (Exception ex) {
-                    ex.printStackTrace();
-                }
-                return;
-            });
-        }
         final Optional<ProviderRegistration<LuckPerms>> LuckProvider = (Optional<ProviderRegistration<LuckPerms>>)Sponge.getServiceManager().getRegistration((Class)LuckPerms.class);
         if (LuckProvider.isPresent()) {
             final LuckPerms api2 = (LuckPerms)LuckProvider.get().getProvider();
             this.provider = new PAPIProvider(this, api2);
+            this.provider.setAsync(Boolean.getBoolean("luckperms.placeholders.async"));
+            this.provider.getStats().setEnabled(Boolean.getBoolean("luckperms.placeholders.stats"));
+            this.registerCommands();
+        }
+        final Optional<ProviderRegistration<PlaceholderService>> PAPIProvider = (Optional<ProviderRegistration<PlaceholderService>>)Sponge.getServiceManager().getRegistration((Class)PlaceholderService.class);
+        if (PAPIProvider.isPresent()) {
+            this.registerExpansion((PlaceholderService)PAPIProvider.get().getProvider());
+        }
+    }
+
+    // A plain function instead of an annotated method, PlaceholderAPI hands the token over without reflection or argument injection.
+    private void registerExpansion(final PlaceholderService api) {
+        final ExpansionBuilder<Object, Object, String, ?> builder = (ExpansionBuilder<Object, Object, String, ?>)api.builder();
+        builder.id("luckperms")
+                .plugin(this)
+                .author("Kyle")
+                .version("1.0.0.0")
+                .description("Placeholders for Luck Perms")
+                .url("https://www.kxnrl.com")
+                .function(this::luckperms);
+        if (this.provider != null) {
+            builder.tokens(this.provider.getPlaceholderIds());
+        }
+        try {
+            builder.buildAndRegister();
+        }
+        catch (Exception ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    private void registerCommands() {
+        final CommandSpec stats = CommandSpec.builder()
+                .description(Text.of("Show or control placeholder statistics"))
+                .permission("luckperms.placeholders.stats")
+                .arguments(GenericArguments.optional(GenericArguments.choices(Text.of("action"), ImmutableMap.of("on", "on", "off", "off", "reset", "reset"))))
+                .executor(this::stats)
+                .build();
+        Sponge.getCommandManager().register(this, CommandSpec.builder().child(stats, "stats").build(), "lpplaceholders");
+    }
+
+    private CommandResult stats(final CommandSource src, final CommandContext args) {
+        final PAPIProvider provider = this.provider;
+        if (provider == null) {
+            return CommandResult.empty();
+        }
+        final PlaceholderStatsMXBean stats = provider.getStats();
+        final Optional<String> action = args.getOne("action");
+        if (action.isPresent()) {
+            switch (action.get()) {
+                case "on":
+                    stats.setEnabled(true);
+                    break;
+                case "off":
+                    stats.setEnabled(false);
+                    break;
+                default:
+                    stats.reset();
+                    break;
+            }
+            src.sendMessage(Text.of("Placeholder stats: " + (stats.isEnabled() ? "enabled" : "disabled")));
+            return CommandResult.success();
+        }
+        if (!stats.isEnabled()) {
+            src.sendMessage(Text.of("Placeholder stats are disabled, enable them with /lpplaceholders stats on"));
+        }
+        stats.top(10).forEach(line -> src.sendMessage(Text.of(line)));
+        src.sendMessage(Text.of(String.format("unknown tokens: %d, token cache hit rate: %.1f%%", stats.getUnknownTokens(), stats.getTokenCacheHitRate() * 100.0)));
+        return CommandResult.success();
+    }
+
+    @Listener
+    public void onServerStopping(final GameStoppingServerEvent event) {
+        if (this.provider != null) {
+            this.provider.close();
+            this.provider = null;
+        }
+    }
+
+    @Listener
+    public void onPlayerDisconnect(final ClientConnectionEvent.Disconnect event) {
+        if (this.provider != null) {
+            this.provider.unload(event.getTargetEntity().getUniqueId());
         }
     }
     
-    @Placeholder(id = "luckperms")
-    public String luckperms(@Token(fix = true) @Nullable final String token, @Nullable @Source final Player player) {
-        if (player == null || this.provider == null) {
+    // Offline sources (signs, holograms showing a User) go through the UUID overload.
+    public String luckperms(@Nullable final String token, @Nullable final Object source, @Nullable final Object observer) {
+        final PAPIProvider provider = this.provider;
+        if (token == null || provider == null) {
+            return "";
+        }
+        final String result;
+        if (source instanceof Player) {
+            result = provider.onPlaceholderRequest((Player)source, token);
+        }
+        else if (source instanceof User) {
+            result = provider.onPlaceholderRequest(((User)source).getUniqueId(), token);
+        }
+        else {
             return "";
         }
-        final String result = this.provider.onPlaceholderRequest(player, token);
         return (result == null) ? "" : result;
     }
     
+    // Runs while the plugin is constructed, a bad template is reported and replaced by the default instead of failing the load.
+    private static IPlaceholderFormatter createFormatter() {
+        final String duration = System.getProperty("luckperms.placeholders.format.duration", PlaceholderFormatter.DEFAULT_DURATION);
+        final String trueText = System.getProperty("luckperms.placeholders.format.true", "yes");
+        final String falseText = System.getProperty("luckperms.placeholders.format.false", "no");
+        try {
+            return PlaceholderFormatter.compile(duration, trueText, falseText);
+        }
+        catch (IllegalArgumentException ex) {
+            ex.printStackTrace();
+            return PlaceholderFormatter.compile(PlaceholderFormatter.DEFAULT_DURATION, trueText, falseText);
+        }
+    }
+
     @Override
-    public String formatTime(int seconds) {
-        if (seconds == 0) {
-            return "0s";
-        }
-        long minute = seconds / 60;
-        seconds %= 60;
-        long hour = minute / 60L;
-        minute %= 60L;
-        final long day = hour / 24L;
-        hour %= 24L;
-        final StringBuilder time = new StringBuilder();
-        if (day != 0L) {
-            time.append(day).append("d ");
-        }
-        if (hour != 0L) {
-            time.append(hour).append("h ");
-        }
-        if (minute != 0L) {
-            time.append(minute).append("m ");
-        }
-        if (seconds != 0) {
-            time.append(seconds).append("s");
-        }
-        return time.toString().trim();
+    public IPlaceholderFormatter getFormatter() {
+        return this.formatter;
     }
-    
+
+    @Override
+    public int getCurrentTick() {
+        return Sponge.getServer().getRunningTimeTicks();
+    }
+
     @Override
-    public String formatBoolean(final boolean b) {
-        return b ? "yes" : "no";
+    public String getLoadingPlaceholder() {
+        return this.loadingPlaceholder;
     }
 }
@@ -0,0 +1,86 @@
+package com.kxnrl.papi.luckperms;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import net.luckperms.api.metastacking.DuplicateRemovalFunction;
+import net.luckperms.api.metastacking.MetaStackDefinition;
+import net.luckperms.api.metastacking.MetaStackFactory;
+import net.luckperms.api.query.QueryOptions;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+// Hands out the same definition and derived QueryOptions instances, so LuckPerms' CachedMetaData lookups keyed by QueryOptions hit.
+final class MetaStackCache
+{
+    private final MetaStackFactory factory;
+    private final LoadingCache<String, Optional<MetaStackDefinition>> definitions;
+    private final LoadingCache<DerivedKey, QueryOptions> queryOptions;
+
+    MetaStackCache(final MetaStackFactory factory) {
+        this.factory = factory;
+        // invalid elements are cached as empty so repeated garbage does not reach the factory
+        this.definitions = CacheBuilder.newBuilder()
+                .maximumSize(256L)
+                .expireAfterAccess(30L, TimeUnit.MINUTES)
+                .build(CacheLoader.from(this::createDefinition));
+        this.queryOptions = CacheBuilder.newBuilder()
+                .maximumSize(1024L)
+                .expireAfterAccess(10L, TimeUnit.MINUTES)
+                .build(CacheLoader.from(MetaStackCache::deriveQueryOptions));
+    }
+
+    Optional<MetaStackDefinition> definition(final String element) {
+        return this.definitions.getUnchecked(element);
+    }
+
+    QueryOptions queryOptions(final QueryOptions base, final MetaStackDefinition definition) {
+        return this.queryOptions.getUnchecked(new DerivedKey(base, definition));
+    }
+
+    private Optional<MetaStackDefinition> createDefinition(final String element) {
+        return this.factory.fromString(element)
+                .map(e -> this.factory.createDefinition(ImmutableList.of(e), DuplicateRemovalFunction.RETAIN_ALL, "", "", ""));
+    }
+
+    private static QueryOptions deriveQueryOptions(final DerivedKey key) {
+        return key.base.toBuilder()
+                .option(MetaStackDefinition.PREFIX_STACK_KEY, key.definition)
+                .option(MetaStackDefinition.SUFFIX_STACK_KEY, key.definition)
+                .build();
+    }
+
+    private static final class DerivedKey
+    {
+        private final QueryOptions base;
+        private final MetaStackDefinition definition;
+        private final int hash;
+
+        private DerivedKey(final QueryOptions base, final MetaStackDefinition definition) {
+            this.base = base;
+            this.definition = definition;
+            this.hash = 31 * base.hashCode() + System.identityHashCode(definition);
+        }
+
+        // definitions are canonical, identity is enough
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof DerivedKey)) {
+                return false;
+            }
+            final DerivedKey other = (DerivedKey)o;
+            return this.definition == other.definition && Objects.equals(this.base, other.base);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.kxnrl.papi.luckperms;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import net.luckperms.api.model.user.User;
+import net.luckperms.api.model.user.UserManager;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Users looked up by UUID (offline players on leaderboards, signs, holograms), loaded once and kept for a while.
+// Users LuckPerms still holds go through the same bound, so state derived from them is released like any other.
+final class OfflineUsers
+{
+    private static final long MAX_USERS = 1024L;
+    private static final long EXPIRE_MINUTES = 10L;
+
+    private final UserManager userManager;
+    private final Cache<UUID, CompletableFuture<User>> users;
+
+    // removed is told about every user that leaves the cache, so state derived from it can go as well
+    OfflineUsers(final UserManager userManager, final Consumer<UUID> removed) {
+        this.userManager = userManager;
+        this.users = CacheBuilder.newBuilder()
+                .maximumSize(MAX_USERS)
+                .expireAfterWrite(EXPIRE_MINUTES, TimeUnit.MINUTES)
+                .removalListener((RemovalListener<UUID, CompletableFuture<User>>)n -> removed.accept(n.getKey()))
+                .build();
+    }
+
+    // Null while the user is still loading, concurrent callers for the same UUID share one loadUser.
+    User get(final UUID uuid) {
+        final User loaded = this.userManager.getUser(uuid);
+        if (loaded != null) {
+            // LuckPerms can unload it any time without telling us, the cache entry is what expires it here
+            if (!holds(this.users.getIfPresent(uuid), loaded)) {
+                this.users.put(uuid, CompletableFuture.completedFuture(loaded));
+            }
+            return loaded;
+        }
+        final CompletableFuture<User> future;
+        try {
+            future = this.users.get(uuid, () -> this.load(uuid));
+        }
+        catch (ExecutionException | UncheckedExecutionException ex) {
+            return null;
+        }
+        if (!future.isDone()) {
+            return null;
+        }
+        if (future.isCompletedExceptionally()) {
+            // failed before it was cached, whenComplete had nothing to remove yet
+            this.users.asMap().remove(uuid, future);
+            return null;
+        }
+        return future.join();
+    }
+
+    // LuckPerms loaded the user itself, a fresher copy than anything cached here.
+    void loaded(final User user) {
+        if (this.users.getIfPresent(user.getUniqueId()) != null) {
+            this.users.put(user.getUniqueId(), CompletableFuture.completedFuture(user));
+        }
+    }
+
+    void invalidateAll() {
+        this.users.invalidateAll();
+    }
+
+    private CompletableFuture<User> load(final UUID uuid) {
+        final CompletableFuture<User> future = this.userManager.loadUser(uuid);
+        // failed loads are forgotten so the next request retries
+        future.whenComplete((user, ex) -> {
+            if (ex != null) {
+                this.users.asMap().remove(uuid, future);
+            }
+        });
+        return future;
+    }
+
+    private static boolean holds(final CompletableFuture<User> future, final User user) {
+        return future != null && future.isDone() && !future.isCompletedExceptionally() && future.join() == user;
+    }
+}
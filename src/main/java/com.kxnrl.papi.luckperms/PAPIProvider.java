@@ -2,318 +2,651 @@ package com.kxnrl.papi.luckperms;
 
 import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.kxnrl.papi.luckperms.structures.IPlaceholderFormatter;
+import com.kxnrl.papi.luckperms.structures.IPlaceholderListener;
 import com.kxnrl.papi.luckperms.structures.IPlaceholderProvider;
 import com.kxnrl.papi.luckperms.structures.IPlaceholderPlatform;
+import com.kxnrl.papi.luckperms.structures.IPlaceholderSubscription;
+import com.kxnrl.papi.luckperms.structures.IPlaceholderTable;
+import com.kxnrl.papi.luckperms.structures.IResolutionContext;
 import net.luckperms.api.LuckPerms;
 import net.luckperms.api.cacheddata.CachedDataManager;
 import net.luckperms.api.cacheddata.CachedPermissionData;
-import net.luckperms.api.metastacking.DuplicateRemovalFunction;
-import net.luckperms.api.metastacking.MetaStackDefinition;
-import net.luckperms.api.metastacking.MetaStackElement;
-import net.luckperms.api.model.group.Group;
+import net.luckperms.api.context.ContextManager;
+import net.luckperms.api.event.EventBus;
+import net.luckperms.api.event.EventSubscription;
+import net.luckperms.api.event.group.GroupCreateEvent;
+import net.luckperms.api.event.group.GroupDataRecalculateEvent;
+import net.luckperms.api.event.group.GroupDeleteEvent;
+import net.luckperms.api.event.group.GroupLoadAllEvent;
+import net.luckperms.api.event.group.GroupLoadEvent;
+import net.luckperms.api.event.node.NodeMutateEvent;
+import net.luckperms.api.event.sync.PostSyncEvent;
+import net.luckperms.api.event.track.TrackCreateEvent;
+import net.luckperms.api.event.track.TrackDeleteEvent;
+import net.luckperms.api.event.track.TrackLoadAllEvent;
+import net.luckperms.api.event.track.TrackLoadEvent;
+import net.luckperms.api.event.track.mutate.TrackMutateEvent;
+import net.luckperms.api.event.user.UserDataRecalculateEvent;
+import net.luckperms.api.event.user.UserLoadEvent;
 import net.luckperms.api.model.user.User;
-import net.luckperms.api.node.Node;
-import net.luckperms.api.node.NodeType;
-import net.luckperms.api.node.types.InheritanceNode;
 import net.luckperms.api.query.QueryOptions;
-import net.luckperms.api.track.Track;
 import org.spongepowered.api.entity.living.player.Player;
 
-import java.time.Instant;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class PAPIProvider implements IPlaceholderProvider
 {
+    private static final Splitter TRACK_SPLITTER = Splitter.on(',').trimResults();
+    private static final int PARALLEL_THRESHOLD = 64;
+    private static final String STATS_MBEAN_NAME = "com.kxnrl.papi.luckperms:type=PlaceholderStats";
+
     private final IPlaceholderPlatform platform;
+    private final IPlaceholderFormatter formatter;
     private final LuckPerms luckPerms;
-    private final Map<String, Placeholder> placeholders;
+    private final PlaceholderTrie<Registration> placeholders;
+    private final List<String> placeholderIds;
+    // Keyed by the raw token, unknown tokens are kept as negative entries so garbage can't bypass the bound.
+    private final Cache<String, CompiledToken> compiledTokens;
+    private final GroupSnapshot.Holder groups;
+    private final MetaStackCache metaStacks;
+    private final PlaceholderStats stats;
+    private final ValueCache values;
+    private final OfflineUsers offlineUsers;
+    private final Map<UUID, UserIndex> userIndexes;
+    private final Map<UUID, ResolutionContext> contexts;
+    // Kept apart from the online contexts, entries leave with the offline user they were built for.
+    private final Map<UUID, ResolutionContext> offlineContexts;
+    private final ScheduledExecutorService sweepScheduler;
+    private final List<EventSubscription<?>> subscriptions;
+    private final ChangeNotifier notifier;
+    private volatile AsyncResolver async;
 
     public PAPIProvider(final IPlaceholderPlatform platform, final LuckPerms luckPerms) {
         this.platform = platform;
+        this.formatter = platform.getFormatter();
         this.luckPerms = luckPerms;
+        this.metaStacks = new MetaStackCache(luckPerms.getMetaStackFactory());
+        this.groups = new GroupSnapshot.Holder(luckPerms);
         final PlaceholderBuilder builder = new PlaceholderBuilder();
         this.setup(builder);
         this.placeholders = builder.build();
+        this.placeholderIds = Collections.unmodifiableList(new ArrayList<String>(builder.ids()));
+        this.compiledTokens = CacheBuilder.newBuilder()
+                .maximumSize(4096L)
+                .expireAfterAccess(30L, TimeUnit.MINUTES)
+                .recordStats()
+                .build();
+        this.stats = new PlaceholderStats(builder.ids(), this.compiledTokens::stats);
+        this.registerStats();
+        this.values = new ValueCache();
+        this.offlineUsers = new OfflineUsers(luckPerms.getUserManager(), this::invalidate);
+        this.userIndexes = new ConcurrentHashMap<UUID, UserIndex>();
+        this.contexts = new ConcurrentHashMap<UUID, ResolutionContext>();
+        this.offlineContexts = new ConcurrentHashMap<UUID, ResolutionContext>();
+        this.sweepScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("luckperms-placeholders-sweep")
+                .setDaemon(true)
+                .build());
+        this.notifier = new ChangeNotifier(this, this.sweepScheduler);
+        this.subscriptions = new ArrayList<EventSubscription<?>>();
+        this.subscribe(luckPerms.getEventBus());
+    }
+
+    private void subscribe(final EventBus bus) {
+        this.subscriptions.add(bus.subscribe(UserDataRecalculateEvent.class, e -> this.invalidate(e.getUser().getUniqueId())));
+        this.subscriptions.add(bus.subscribe(UserLoadEvent.class, e -> this.offlineUsers.loaded(e.getUser())));
+        this.subscriptions.add(bus.subscribe(NodeMutateEvent.class, e -> {
+            if (e.isUser()) {
+                this.invalidate(((User)e.getTarget()).getUniqueId());
+            }
+            else {
+                this.invalidateAll();
+            }
+        }));
+        // group and track changes reach every user through inheritance and display names
+        this.subscriptions.add(bus.subscribe(GroupCreateEvent.class, e -> this.invalidateAll()));
+        this.subscriptions.add(bus.subscribe(GroupDeleteEvent.class, e -> this.invalidateAll()));
+        this.subscriptions.add(bus.subscribe(GroupLoadAllEvent.class, e -> this.invalidateAll()));
+        this.subscriptions.add(bus.subscribe(GroupDataRecalculateEvent.class, e -> this.invalidateAll()));
+        this.subscriptions.add(bus.subscribe(TrackCreateEvent.class, e -> this.invalidateAll()));
+        this.subscriptions.add(bus.subscribe(TrackDeleteEvent.class, e -> this.invalidateAll()));
+        this.subscriptions.add(bus.subscribe(TrackLoadAllEvent.class, e -> this.invalidateAll()));
+        this.subscriptions.add(bus.subscribe(TrackMutateEvent.class, e -> this.invalidateAll()));
+        this.subscriptions.add(bus.subscribe(PostSyncEvent.class, e -> {
+            // storage changed underneath, offline users are reloaded on their next request
+            this.offlineUsers.invalidateAll();
+            this.invalidateAll();
+        }));
+        // a single group or track loading in only has to show up in the snapshot, its data changes arrive as the events above
+        this.subscriptions.add(bus.subscribe(GroupLoadEvent.class, e -> this.groups.invalidate()));
+        this.subscriptions.add(bus.subscribe(TrackLoadEvent.class, e -> this.groups.invalidate()));
+    }
+
+    public void invalidate(final UUID uuid) {
+        this.contexts.remove(uuid);
+        this.offlineContexts.remove(uuid);
+        this.userIndexes.remove(uuid);
+        this.values.invalidate(uuid);
+        final AsyncResolver async = this.async;
+        if (async != null) {
+            async.refresh(uuid);
+        }
+        this.notifier.refresh(uuid);
+    }
+
+    public void invalidateAll() {
+        this.groups.invalidate();
+        this.contexts.clear();
+        this.offlineContexts.clear();
+        this.userIndexes.clear();
+        this.values.invalidateAll();
+        final AsyncResolver async = this.async;
+        if (async != null) {
+            async.refreshAll();
+        }
+        this.notifier.refreshAll();
+    }
+
+    // The player's data is unchanged, only their query options moved; the value cache starts over by itself on the next read.
+    void contextChanged(final UUID uuid) {
+        this.contexts.remove(uuid);
+        final AsyncResolver async = this.async;
+        if (async != null) {
+            async.refresh(uuid);
+        }
+        this.notifier.refresh(uuid);
+    }
+
+    // Only the rendered values go, indexes built from the user's nodes are kept.
+    void invalidateValues(final UUID uuid) {
+        this.values.invalidate(uuid);
+    }
+
+    QueryOptions queryOptions(final Player player) {
+        return this.luckPerms.getContextManager().getQueryOptions(player);
+    }
+
+    int currentTick() {
+        return this.platform.getCurrentTick();
+    }
+
+    // The player is gone, unlike invalidate nothing is recomputed for them.
+    public void unload(final UUID uuid) {
+        final AsyncResolver async = this.async;
+        if (async != null) {
+            async.remove(uuid);
+        }
+        this.notifier.remove(uuid);
+        this.invalidate(uuid);
+    }
+
+    // In async mode the server thread only reads values published by a dedicated executor.
+    public synchronized void setAsync(final boolean enabled) {
+        if (enabled == (this.async != null)) {
+            return;
+        }
+        if (enabled) {
+            this.async = new AsyncResolver(this, this.stats, this.sweepScheduler);
+        }
+        else {
+            this.async.close();
+            this.async = null;
+        }
+    }
+
+    public boolean isAsync() {
+        return this.async != null;
+    }
+
+    // Registered ids, dynamic ones with their trailing underscore.
+    public List<String> getPlaceholderIds() {
+        return this.placeholderIds;
+    }
+
+    public PlaceholderStatsMXBean getStats() {
+        return this.stats;
+    }
+
+    private void registerStats() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new StandardMBean(this.stats, PlaceholderStatsMXBean.class, true), new ObjectName(STATS_MBEAN_NAME));
+        }
+        catch (JMException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    private void unregisterStats() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(STATS_MBEAN_NAME));
+        }
+        catch (JMException ex) {
+            // already gone
+        }
+    }
+
+    public void close() {
+        this.unregisterStats();
+        this.setAsync(false);
+        this.notifier.close();
+        this.subscriptions.forEach(EventSubscription::close);
+        this.subscriptions.clear();
+        this.sweepScheduler.shutdownNow();
+        this.invalidateAll();
     }
 
     private void setup(final PlaceholderBuilder builder) {
-        builder.addDynamic("context", (player, user, userData, queryOptions, key) ->
-                String.join(", ", this.luckPerms.getContextManager().getContext(player).getValues(key))
-        );
-        builder.addStatic("groups", (player, user, userData, queryOptions) ->
-                user.getNodes()
+        builder.addDynamic("context", (context, user, userData, queryOptions, key) ->
+                String.join(", ", context.getContexts().getValues(key))
+        ).expireAfter(1L, TimeUnit.SECONDS);
+        builder.addStatic("groups", (context, user, userData, queryOptions) ->
+                this.index(user).inheritance().view(queryOptions.context()).groups()
                         .stream()
-                        .filter(NodeType.INHERITANCE::matches)
-                        .map(NodeType.INHERITANCE::cast)
-                        .filter(n -> n.getContexts().isSatisfiedBy(queryOptions.context()))
-                        .map(InheritanceNode::getGroupName)
                         .map(this::convertGroupDisplayName)
                         .collect(Collectors.joining(", "))
         );
-        builder.addStatic("primary_group_name", (player, user, userData, queryOptions) -> convertGroupDisplayName(user.getPrimaryGroup()));
-        builder.addDynamic("has_permission", (player, user, userData, queryOptions, node) ->
-                user.getNodes().stream()
-                        .filter(n -> n.getContexts().isSatisfiedBy(queryOptions.context()))
-                        .anyMatch(n -> n.getKey().equals(node))
-        );
-        builder.addDynamic("inherits_permission", (player, user, userData, queryOptions, node) ->
-                user.resolveInheritedNodes(queryOptions).stream()
-                        .filter(n -> n.getContexts().isSatisfiedBy(queryOptions.context()))
-                        .anyMatch(n -> n.getKey().equals(node))
-        );
-        builder.addDynamic("check_permission", (player, user, userData, queryOptions, node) -> user.getCachedData().getPermissionData(queryOptions).checkPermission(node).asBoolean());
-        builder.addDynamic("in_group", (player, user, userData, queryOptions, groupName) ->
-                user.getNodes().stream()
-                        .filter(NodeType.INHERITANCE::matches)
-                        .map(NodeType.INHERITANCE::cast)
-                        .filter(n -> n.getContexts().isSatisfiedBy(queryOptions.context()))
-                        .map(InheritanceNode::getGroupName)
-                        .anyMatch(s -> s.equalsIgnoreCase(groupName))
+        builder.addStatic("primary_group_name", (context, user, userData, queryOptions) -> convertGroupDisplayName(user.getPrimaryGroup()));
+        builder.addCondition("has_permission", (context, user, userData, queryOptions, node) ->
+                this.index(user).permissions().contains(node, queryOptions.context())
         );
-        builder.addDynamic("inherits_group", (player, user, userData, queryOptions, groupName) -> user.getCachedData().getPermissionData(queryOptions).checkPermission("group." + groupName).asBoolean());
-        builder.addDynamic("on_track", (player, user, userData, queryOptions, trackName) ->
-                Optional.ofNullable(this.luckPerms.getTrackManager().getTrack(trackName))
-                        .map(t -> t.containsGroup(user.getPrimaryGroup()))
-                        .orElse(false)
+        builder.addCondition("inherits_permission", (context, user, userData, queryOptions, node) ->
+                this.index(user).inheritedPermissions(queryOptions).contains(node, queryOptions.context())
         );
-        builder.addDynamic("has_groups_on_track", (player, user, userData, queryOptions, trackName) ->
-                Optional.ofNullable(this.luckPerms.getTrackManager().getTrack(trackName))
-                        .map(t -> user.getNodes().stream()
-                                .filter(NodeType.INHERITANCE::matches)
-                                .map(NodeType.INHERITANCE::cast)
-                                .map(InheritanceNode::getGroupName)
-                                .anyMatch(t::containsGroup)
-                        )
-                        .orElse(false)
+        builder.addCondition("check_permission", (context, user, userData, queryOptions, node) -> user.getCachedData().getPermissionData(queryOptions).checkPermission(node).asBoolean());
+        builder.addCondition("in_group", (context, user, userData, queryOptions, groupName) ->
+                this.index(user).inheritance().view(queryOptions.context()).inGroup(groupName)
         );
-        builder.addStatic("highest_group_by_weight", (player, user, userData, queryOptions) ->
-                user.getNodes().stream()
-                        .filter(NodeType.INHERITANCE::matches)
-                        .map(NodeType.INHERITANCE::cast)
-                        .filter(n -> n.getContexts().isSatisfiedBy(queryOptions.context()))
-                        .map(InheritanceNode::getGroupName)
-                        .map(n -> this.luckPerms.getGroupManager().getGroup(n))
-                        .filter(Objects::nonNull)
-                        .min((o1, o2) -> {
-                            int ret = Integer.compare(o1.getWeight().orElse(0), o2.getWeight().orElse(0));
-                            return ret == 1 ? 1 : -1;
-                        })
-                        .map(Group::getName)
+        builder.addCondition("inherits_group", groupName -> "group." + groupName, (context, user, userData, queryOptions, permission) -> user.getCachedData().getPermissionData(queryOptions).checkPermission(permission).asBoolean());
+        builder.addCondition("on_track", (context, user, userData, queryOptions, trackName) -> {
+            final GroupSnapshot groups = this.groups.current();
+            final GroupSnapshot.TrackEntry track = groups.track(trackName);
+            return track != null && groups.onTrack(user.getPrimaryGroup(), track);
+        });
+        builder.addCondition("has_groups_on_track", (context, user, userData, queryOptions, trackName) -> {
+            final GroupSnapshot groups = this.groups.current();
+            final GroupSnapshot.TrackEntry track = groups.track(trackName);
+            return track != null && this.index(user).inheritance().names().stream().anyMatch(g -> groups.onTrack(g, track));
+        });
+        builder.addStatic("highest_group_by_weight", (context, user, userData, queryOptions) ->
+                Optional.ofNullable(this.index(user).inheritance().view(queryOptions.context()).highestByWeight())
                         .map(this::convertGroupDisplayName)
                         .orElse("")
         );
-        builder.addStatic("lowest_group_by_weight", (player, user, userData, queryOptions) ->
-                user.getNodes().stream()
-                        .filter(NodeType.INHERITANCE::matches)
-                        .map(NodeType.INHERITANCE::cast)
-                        .filter(n -> n.getContexts().isSatisfiedBy(queryOptions.context()))
-                        .map(InheritanceNode::getGroupName)
-                        .map(n -> this.luckPerms.getGroupManager().getGroup(n))
-                        .filter(Objects::nonNull)
-                        .min((o1, o2) -> {
-                            int ret = Integer.compare(o1.getWeight().orElse(0), o2.getWeight().orElse(0));
-                            return ret == 1 ? -1 : 1;
-                        })
-                        .map(Group::getName)
+        builder.addStatic("lowest_group_by_weight", (context, user, userData, queryOptions) ->
+                Optional.ofNullable(this.index(user).inheritance().view(queryOptions.context()).lowestByWeight())
                         .map(this::convertGroupDisplayName)
                         .orElse("")
         );
-        builder.addDynamic("first_group_on_tracks", (player, user, userData, queryOptions, argument) -> {
-            List<String> tracks = Splitter.on(',').trimResults().splitToList(argument);
-            CachedPermissionData permData = userData.getPermissionData(queryOptions);
-            return tracks.stream()
-                    .map(n -> this.luckPerms.getTrackManager().getTrack(n))
-                    .filter(Objects::nonNull)
-                    .map(Track::getGroups)
-                    .map(groups -> groups.stream()
-                            .filter(s -> permData.checkPermission("group." + s).asBoolean())
-                            .findFirst()
-                    )
-                    .filter(Optional::isPresent)
-                    .map(Optional::get)
-                    .findFirst()
-                    .map(this::convertGroupDisplayName)
-                    .orElse("");
-        });
-        builder.addDynamic("last_group_on_tracks", (player, user, userData, queryOptions, argument) -> {
-            List<String> tracks = Splitter.on(',').trimResults().splitToList(argument);
-            CachedPermissionData permData = userData.getPermissionData(queryOptions);
-            return tracks.stream()
-                    .map(n -> this.luckPerms.getTrackManager().getTrack(n))
-                    .filter(Objects::nonNull)
-                    .map(Track::getGroups)
-                    .map(Lists::reverse)
-                    .map(groups -> groups.stream()
-                            .filter(s -> permData.checkPermission("group." + s).asBoolean())
-                            .findFirst()
-                    )
-                    .filter(Optional::isPresent)
-                    .map(Optional::get)
-                    .findFirst()
-                    .map(this::convertGroupDisplayName)
-                    .orElse("");
-        });
-        builder.addDynamic("expiry_time", (player, user, userData, queryOptions, node) -> {
-            long currentTime = System.currentTimeMillis() / 1000L;
-            return user.getNodes().stream()
-                    .filter(Node::hasExpiry)
-                    .filter(n -> !n.hasExpired())
-                    .filter(n -> n.getKey().equals(node))
-                    .filter(n -> n.getContexts().isSatisfiedBy(queryOptions.context()))
-                    .map(Node::getExpiry)
-                    .map(Instant::getEpochSecond)
-                    .findFirst()
-                    .map(e -> formatTime((int) (e - currentTime)))
-                    .orElse("");
-        });
-        builder.addDynamic("inherited_expiry_time", (player, user, userData, queryOptions, node) -> {
-            long currentTime = System.currentTimeMillis() / 1000L;
-            return user.resolveInheritedNodes(QueryOptions.nonContextual()).stream()
-                    .filter(Node::hasExpiry)
-                    .filter(n -> !n.hasExpired())
-                    .filter(n -> n.getKey().equals(node))
-                    .filter(n -> n.getContexts().isSatisfiedBy(queryOptions.context()))
-                    .map(Node::getExpiry)
-                    .map(Instant::getEpochSecond)
-                    .findFirst()
-                    .map(e -> formatTime((int) (e - currentTime)))
-                    .orElse("");
+        builder.addDynamic("first_group_on_tracks", TRACK_SPLITTER::splitToList, (context, user, userData, queryOptions, tracks) -> {
+            final CachedPermissionData permData = userData.getPermissionData(queryOptions);
+            final GroupSnapshot groups = this.groups.current();
+            for (final String trackName : tracks) {
+                final GroupSnapshot.TrackEntry track = groups.track(trackName);
+                if (track == null) {
+                    continue;
+                }
+                for (int i = 0; i < track.size(); ++i) {
+                    if (permData.checkPermission(track.permission(i)).asBoolean()) {
+                        return groups.displayName(track.group(i));
+                    }
+                }
+            }
+            return "";
         });
-        builder.addDynamic("group_expiry_time", (player, user, userData, queryOptions, group) -> {
-            long currentTime = System.currentTimeMillis() / 1000L;
-            return user.getNodes().stream()
-                    .filter(Node::hasExpiry)
-                    .filter(n -> !n.hasExpired())
-                    .filter(NodeType.INHERITANCE::matches)
-                    .map(NodeType.INHERITANCE::cast)
-                    .filter(n -> n.getGroupName().equalsIgnoreCase(group))
-                    .filter(n -> n.getContexts().isSatisfiedBy(queryOptions.context()))
-                    .map(Node::getExpiry)
-                    .map(Instant::getEpochSecond)
-                    .findFirst()
-                    .map(e -> formatTime((int) (e - currentTime)))
-                    .orElse("");
+        builder.addDynamic("last_group_on_tracks", TRACK_SPLITTER::splitToList, (context, user, userData, queryOptions, tracks) -> {
+            final CachedPermissionData permData = userData.getPermissionData(queryOptions);
+            final GroupSnapshot groups = this.groups.current();
+            for (final String trackName : tracks) {
+                final GroupSnapshot.TrackEntry track = groups.track(trackName);
+                if (track == null) {
+                    continue;
+                }
+                for (int i = track.size() - 1; i >= 0; --i) {
+                    if (permData.checkPermission(track.permission(i)).asBoolean()) {
+                        return groups.displayName(track.group(i));
+                    }
+                }
+            }
+            return "";
         });
-        builder.addStatic("prefix", (player, user, userData, queryOptions) -> Strings.nullToEmpty(userData.getMetaData(this.luckPerms.getContextManager().getQueryOptions(player)).getPrefix()));
-        builder.addStatic("suffix", (player, user, userData, queryOptions) -> Strings.nullToEmpty(userData.getMetaData(this.luckPerms.getContextManager().getQueryOptions(player)).getSuffix()));
-        builder.addDynamic("meta", (player, user, userData, queryOptions, node) -> {
-            List<String> values = userData.getMetaData(this.luckPerms.getContextManager().getQueryOptions(player)).getMeta().getOrDefault(node, ImmutableList.of());
+        builder.addDynamic("expiry_time", (context, user, userData, queryOptions, node) -> {
+            final long now = System.currentTimeMillis();
+            return this.formatExpiry(this.index(user).expiry().permission(node, queryOptions.context(), now), now);
+        }).expireAfter(1L, TimeUnit.SECONDS);
+        builder.addDynamic("inherited_expiry_time", (context, user, userData, queryOptions, node) -> {
+            final long now = System.currentTimeMillis();
+            return this.formatExpiry(this.index(user).inheritedExpiry().permission(node, queryOptions.context(), now), now);
+        }).expireAfter(1L, TimeUnit.SECONDS);
+        builder.addDynamic("group_expiry_time", (context, user, userData, queryOptions, group) -> {
+            final long now = System.currentTimeMillis();
+            return this.formatExpiry(this.index(user).expiry().group(group, queryOptions.context(), now), now);
+        }).expireAfter(1L, TimeUnit.SECONDS);
+        builder.addStatic("prefix", (context, user, userData, queryOptions) -> Strings.nullToEmpty(userData.getMetaData(queryOptions).getPrefix()));
+        builder.addStatic("suffix", (context, user, userData, queryOptions) -> Strings.nullToEmpty(userData.getMetaData(queryOptions).getSuffix()));
+        builder.addDynamic("meta", (context, user, userData, queryOptions, node) -> {
+            List<String> values = userData.getMetaData(queryOptions).getMeta().getOrDefault(node, ImmutableList.of());
             return values.isEmpty() ? "" : values.iterator().next();
         });
-        builder.addDynamic("prefix_element", (player, user, userData, queryOptions, element) -> {
-            MetaStackElement stackElement = this.luckPerms.getMetaStackFactory().fromString(element).orElse(null);
-            if (stackElement == null) {
+        builder.addDynamic("prefix_element", element -> this.metaStacks.definition(element), (context, user, userData, queryOptions, definition) -> {
+            if (!definition.isPresent()) {
                 return "ERROR: Invalid element!";
             }
-
-            MetaStackDefinition stackDefinition = this.luckPerms.getMetaStackFactory().createDefinition(ImmutableList.of(stackElement), DuplicateRemovalFunction.RETAIN_ALL, "", "", "");
-            QueryOptions newOptions = queryOptions.toBuilder()
-                    .option(MetaStackDefinition.PREFIX_STACK_KEY, stackDefinition)
-                    .option(MetaStackDefinition.SUFFIX_STACK_KEY, stackDefinition)
-                    .build();
-            return Strings.nullToEmpty(userData.getMetaData(newOptions).getPrefix());
+            return Strings.nullToEmpty(userData.getMetaData(this.metaStacks.queryOptions(queryOptions, definition.get())).getPrefix());
         });
-        builder.addDynamic("suffix_element", (player, user, userData, queryOptions, element) -> {
-            MetaStackElement stackElement = this.luckPerms.getMetaStackFactory().fromString(element).orElse(null);
-            if (stackElement == null) {
+        builder.addDynamic("suffix_element", element -> this.metaStacks.definition(element), (context, user, userData, queryOptions, definition) -> {
+            if (!definition.isPresent()) {
                 return "ERROR: Invalid element!";
             }
-
-            MetaStackDefinition stackDefinition = this.luckPerms.getMetaStackFactory().createDefinition(ImmutableList.of(stackElement), DuplicateRemovalFunction.RETAIN_ALL, "", "", "");
-            QueryOptions newOptions = queryOptions.toBuilder()
-                    .option(MetaStackDefinition.PREFIX_STACK_KEY, stackDefinition)
-                    .option(MetaStackDefinition.SUFFIX_STACK_KEY, stackDefinition)
-                    .build();
-            return Strings.nullToEmpty(userData.getMetaData(newOptions).getSuffix());
+            return Strings.nullToEmpty(userData.getMetaData(this.metaStacks.queryOptions(queryOptions, definition.get())).getSuffix());
         });
     }
 
     @Override
     public String onPlaceholderRequest(final Player player, final String placeholder) {
+        final AsyncResolver async = this.async;
+        if (async != null) {
+            return async.get(player, placeholder);
+        }
+        return this.resolveNow(player, placeholder);
+    }
+
+    String resolveNow(final Player player, final String placeholder) {
+        final IResolutionContext context = this.createContext(player);
+        if (context == null) {
+            return "";
+        }
+        return this.onPlaceholderRequest(context, placeholder);
+    }
+
+    // Every token rendered for the player during the same tick shares one context.
+    @Override
+    public IResolutionContext createContext(final Player player) {
+        final int tick = this.platform.getCurrentTick();
+        final ResolutionContext context = this.contexts.get(player.getUniqueId());
+        if (context != null && context.tick() == tick && context.subject() == player) {
+            return context;
+        }
         // 因为Sponge版本的PlaceHolderAPI不提供UUID重载. 需要从luckPerms读取
         final User user = this.luckPerms.getUserManager().getUser(player.getUniqueId());
         if (user == null) {
-            return "";
+            return null;
         }
-        final CachedDataManager data = user.getCachedData();
         final QueryOptions queryOptions = this.luckPerms.getContextManager().getQueryOptions(player);
-        final String placeHolder = placeholder.toLowerCase();
-        for (final Map.Entry<String, Placeholder> entry : this.placeholders.entrySet()) {
-            final String id = entry.getKey();
-            final Placeholder p = entry.getValue();
-            boolean handled = false;
-            Object result = null;
-            if (p instanceof DynamicPlaceholder) {
-                final DynamicPlaceholder dp = (DynamicPlaceholder)p;
-                if (placeHolder.startsWith(id) && placeHolder.length() > id.length()) {
-                    final String argument = placeHolder.substring(id.length());
-                    result = dp.handle(player, user, data, queryOptions, argument);
-                    handled = true;
-                }
+        final ResolutionContext created = new ResolutionContext(player, user, queryOptions, tick, this.values.forPlayer(user, queryOptions));
+        this.contexts.put(player.getUniqueId(), created);
+        return created;
+    }
+
+    // Offline users are resolved in their own or the static contexts, the loading value is returned until LuckPerms has them.
+    @Override
+    public String onPlaceholderRequest(final UUID uuid, final String placeholder) {
+        final IResolutionContext context = this.createContext(uuid);
+        if (context == null) {
+            return this.platform.getLoadingPlaceholder();
+        }
+        return this.onPlaceholderRequest(context, placeholder);
+    }
+
+    @Override
+    public IResolutionContext createContext(final UUID uuid) {
+        final User user = this.offlineUsers.get(uuid);
+        if (user == null) {
+            return null;
+        }
+        final int tick = this.platform.getCurrentTick();
+        // a context built for the online player this tick is just as good here
+        final ResolutionContext online = this.contexts.get(uuid);
+        if (online != null && online.tick() == tick && online.getUser() == user) {
+            return online;
+        }
+        final ResolutionContext context = this.offlineContexts.get(uuid);
+        if (context != null && context.tick() == tick && context.getUser() == user) {
+            return context;
+        }
+        final ContextManager contextManager = this.luckPerms.getContextManager();
+        final QueryOptions queryOptions = contextManager.getQueryOptions(user).orElseGet(contextManager::getStaticQueryOptions);
+        final ResolutionContext created = new ResolutionContext(user, user, queryOptions, tick, this.values.forPlayer(user, queryOptions));
+        this.offlineContexts.put(uuid, created);
+        return created;
+    }
+
+    @Override
+    public String onPlaceholderRequest(final IResolutionContext context, final String placeholder) {
+        if (!(context instanceof ResolutionContext)) {
+            throw new IllegalArgumentException("Context was not created by this provider");
+        }
+        final CompiledToken token = this.compile(placeholder);
+        if (token == CompiledToken.UNKNOWN) {
+            this.stats.recordUnknown();
+            return null;
+        }
+        return this.resolve((ResolutionContext)context, token, placeholder);
+    }
+
+    @Override
+    public IPlaceholderTable onPlaceholderRequest(final Collection<? extends Player> players, final List<String> placeholders) {
+        return this.onPlaceholderRequest(players, placeholders, null);
+    }
+
+    @Override
+    public IPlaceholderTable onPlaceholderRequest(final Collection<? extends Player> players, final List<String> placeholders, final ForkJoinPool pool) {
+        final List<Player> rows = new ArrayList<Player>(players);
+        final List<UUID> uuids = new ArrayList<UUID>(rows.size());
+        final Map<UUID, Integer> rowIndex = new HashMap<UUID, Integer>();
+        for (final Player player : rows) {
+            rowIndex.put(player.getUniqueId(), uuids.size());
+            uuids.add(player.getUniqueId());
+        }
+        final List<String> columns = new ArrayList<String>();
+        final Map<String, Integer> columnIndex = new HashMap<String, Integer>();
+        for (final String placeholder : placeholders) {
+            if (!columnIndex.containsKey(placeholder)) {
+                columnIndex.put(placeholder, columns.size());
+                columns.add(placeholder);
             }
-            else if (p instanceof StaticPlaceholder) {
-                final StaticPlaceholder sp = (StaticPlaceholder)p;
-                if (placeHolder.equals(id)) {
-                    result = sp.handle(player, user, data, queryOptions);
-                    handled = true;
-                }
+        }
+        final CompiledToken[] tokens = new CompiledToken[columns.size()];
+        for (int i = 0; i < tokens.length; ++i) {
+            tokens[i] = this.compile(columns.get(i));
+        }
+        final PlaceholderTable table = new PlaceholderTable(Collections.unmodifiableList(uuids), Collections.unmodifiableList(columns), rowIndex, columnIndex);
+        final IntStream range = IntStream.range(0, rows.size());
+        if (pool != null && rows.size() >= PARALLEL_THRESHOLD) {
+            pool.submit(() -> range.parallel().forEach(row -> this.resolveRow(table, row, rows.get(row), columns, tokens))).join();
+        }
+        else {
+            range.forEach(row -> this.resolveRow(table, row, rows.get(row), columns, tokens));
+        }
+        return table;
+    }
+
+    @Override
+    public IPlaceholderSubscription subscribe(final Player player, final Set<String> placeholders, final IPlaceholderListener listener) {
+        return this.notifier.subscribe(player, placeholders, listener);
+    }
+
+    private void resolveRow(final PlaceholderTable table, final int row, final Player player, final List<String> columns, final CompiledToken[] tokens) {
+        final IResolutionContext context = this.createContext(player);
+        for (int column = 0; column < tokens.length; ++column) {
+            final String value;
+            if (context == null) {
+                value = "";
             }
-            if (!handled) {
-                continue;
+            else if (tokens[column] == CompiledToken.UNKNOWN) {
+                this.stats.recordUnknown();
+                value = null;
             }
-            if (result instanceof Boolean) {
-                result = this.formatBoolean((boolean)result);
+            else {
+                value = this.resolve((ResolutionContext)context, tokens[column], columns.get(column));
             }
-            return (result == null) ? null : result.toString();
+            table.set(row, column, value);
+        }
+    }
+
+    private String resolve(final ResolutionContext resolution, final CompiledToken token, final String placeholder) {
+        final long now = System.currentTimeMillis();
+        if (!this.stats.isEnabled()) {
+            final String cached = resolution.values().get(placeholder, now);
+            return (cached != null) ? cached : this.compute(resolution, token, placeholder, now);
+        }
+        final long start = System.nanoTime();
+        final String cached = resolution.values().get(placeholder, now);
+        final String value = (cached != null) ? cached : this.compute(resolution, token, placeholder, now);
+        this.stats.record(token.id, System.nanoTime() - start, cached != null);
+        return value;
+    }
+
+    private String compute(final ResolutionContext resolution, final CompiledToken token, final String placeholder, final long now) {
+        final String value = token.render(resolution, resolution.getUser(), resolution.getCachedData(), resolution.getQueryOptions(), this.formatter);
+        if (value == null) {
+            return null;
         }
-        return null;
+        resolution.values().put(placeholder, value, token.deadline(now));
+        return value;
+    }
+
+    // Null for unknown tokens.
+    String id(final String placeholder) {
+        return this.compile(placeholder).id;
+    }
+
+    long deadline(final String placeholder, final long now) {
+        final CompiledToken token = this.compile(placeholder);
+        return (token == CompiledToken.UNKNOWN) ? ValueCache.NEVER : token.deadline(now);
+    }
+
+    public CacheStats getTokenCacheStats() {
+        return this.compiledTokens.stats();
     }
 
-    private String formatTime(final int time) {
-        return this.platform.formatTime(time);
+    private CompiledToken compile(final String placeholder) {
+        CompiledToken token = this.compiledTokens.getIfPresent(placeholder);
+        if (token == null) {
+            token = this.parse(placeholder);
+            this.compiledTokens.put(placeholder, token);
+        }
+        return token;
     }
 
-    private String formatBoolean(final boolean value) {
-        return this.platform.formatBoolean(value);
+    private CompiledToken parse(final String placeholder) {
+        final PlaceholderTrie.Route<Registration> route = this.placeholders.lookup(placeholder);
+        if (route == null) {
+            return CompiledToken.UNKNOWN;
+        }
+        if (!route.isDynamic()) {
+            return new CompiledToken(route.id(), route.value(), null);
+        }
+        final String argument = placeholder.substring(route.length()).toLowerCase();
+        return new CompiledToken(route.id(), route.value(), ((ArgumentPlaceholder<?>)route.value().placeholder).parse(argument));
     }
 
-    private String convertGroupDisplayName(String groupName) {
-        final Group group = this.luckPerms.getGroupManager().getGroup(groupName);
-        if (group != null) {
-            groupName = group.getFriendlyName();
+    private UserIndex index(final User user) {
+        final UserIndex index = this.userIndexes.get(user.getUniqueId());
+        if (index != null && index.user() == user) {
+            return index;
         }
-        return groupName;
+        final UserIndex created = new UserIndex(user, this.groups);
+        this.userIndexes.put(user.getUniqueId(), created);
+        return created;
+    }
+
+    private String formatExpiry(final long expiry, final long now) {
+        return (expiry == ExpiryIndex.NONE) ? "" : this.formatter.formatDuration(expiry / 1000L - now / 1000L);
+    }
+
+    private String convertGroupDisplayName(final String groupName) {
+        return this.groups.current().displayName(groupName);
     }
 
     private static final class PlaceholderBuilder
     {
-        private final Map<String, Placeholder> placeholders;
+        private final PlaceholderTrie.Builder<Registration> placeholders;
+        private final List<String> ids;
 
         private PlaceholderBuilder() {
-            this.placeholders = new HashMap<String, Placeholder>();
+            this.placeholders = PlaceholderTrie.builder();
+            this.ids = new ArrayList<String>();
+        }
+
+        public Registration addDynamic(final String id, final DynamicPlaceholder<String> placeholder) {
+            return this.addDynamic(id, Function.identity(), placeholder);
+        }
+
+        public <A> Registration addDynamic(final String id, final Function<String, A> parser, final DynamicPlaceholder<A> placeholder) {
+            return this.addArgument(id, new ArgumentPlaceholder<A>(parser, placeholder, null));
         }
 
-        public void addDynamic(final String id, final DynamicPlaceholder placeholder) {
-            this.placeholders.put(id + "_", placeholder);
+        private Registration addArgument(final String id, final ArgumentPlaceholder<?> placeholder) {
+            final Registration registration = new Registration(placeholder);
+            this.placeholders.add(id + "_", registration, true);
+            this.ids.add(id + "_");
+            return registration;
         }
 
-        public void addStatic(final String id, final StaticPlaceholder placeholder) {
-            this.placeholders.put(id, placeholder);
+        // Boolean results stay primitive and go straight to the formatter's precomputed strings.
+        public Registration addCondition(final String id, final DynamicCondition<String> condition) {
+            return this.addCondition(id, Function.identity(), condition);
         }
 
-        public Map<String, Placeholder> build() {
-            return (Map<String, Placeholder>)ImmutableMap.copyOf((Map)this.placeholders);
+        public <A> Registration addCondition(final String id, final Function<String, A> parser, final DynamicCondition<A> condition) {
+            return this.addArgument(id, new ArgumentPlaceholder<A>(parser, null, condition));
+        }
+
+        public Registration addStatic(final String id, final StaticPlaceholder placeholder) {
+            final Registration registration = new Registration(placeholder);
+            this.placeholders.add(id, registration, false);
+            this.ids.add(id);
+            return registration;
+        }
+
+        public List<String> ids() {
+            return this.ids;
+        }
+
+        public PlaceholderTrie<Registration> build() {
+            return this.placeholders.build();
+        }
+    }
+
+    private static final class Registration
+    {
+        private final Placeholder placeholder;
+        private long ttl;
+
+        private Registration(final Placeholder placeholder) {
+            this.placeholder = placeholder;
+            this.ttl = ValueCache.NEVER;
+        }
+
+        // Resolved values are kept until the next multiple of the duration instead of until invalidation.
+        public Registration expireAfter(final long duration, final TimeUnit unit) {
+            this.ttl = unit.toMillis(duration);
+            return this;
         }
     }
 
     @FunctionalInterface
     private interface StaticPlaceholder extends Placeholder
     {
-        Object handle(final Object p0, final User p1, final CachedDataManager p2, final QueryOptions p3);
+        Object handle(final ResolutionContext p0, final User p1, final CachedDataManager p2, final QueryOptions p3);
     }
 
     private interface Placeholder
@@ -321,8 +654,74 @@ public class PAPIProvider implements IPlaceholderProvider
     }
 
     @FunctionalInterface
-    private interface DynamicPlaceholder extends Placeholder
+    private interface DynamicPlaceholder<A>
+    {
+        Object handle(final ResolutionContext p0, final User p1, final CachedDataManager p2, final QueryOptions p3, final A p4);
+    }
+
+    @FunctionalInterface
+    private interface DynamicCondition<A>
     {
-        Object handle(final Object p0, final User p1, final CachedDataManager p2, final QueryOptions p3, final String p4);
+        boolean test(final ResolutionContext p0, final User p1, final CachedDataManager p2, final QueryOptions p3, final A p4);
+    }
+
+    private static final class ArgumentPlaceholder<A> implements Placeholder
+    {
+        private final Function<String, A> parser;
+        private final DynamicPlaceholder<A> handler;
+        private final DynamicCondition<A> condition;
+
+        private ArgumentPlaceholder(final Function<String, A> parser, final DynamicPlaceholder<A> handler, final DynamicCondition<A> condition) {
+            this.parser = parser;
+            this.handler = handler;
+            this.condition = condition;
+        }
+
+        private A parse(final String argument) {
+            return this.parser.apply(argument);
+        }
+
+        @SuppressWarnings("unchecked")
+        private String render(final ResolutionContext p0, final User p1, final CachedDataManager p2, final QueryOptions p3, final Object p4, final IPlaceholderFormatter formatter) {
+            if (this.condition != null) {
+                return formatter.formatBoolean(this.condition.test(p0, p1, p2, p3, (A)p4));
+            }
+            return CompiledToken.format(this.handler.handle(p0, p1, p2, p3, (A)p4), formatter);
+        }
+    }
+
+    private static final class CompiledToken
+    {
+        private static final CompiledToken UNKNOWN = new CompiledToken(null, null, null);
+
+        private final String id;
+        private final Registration registration;
+        private final Object argument;
+
+        private CompiledToken(final String id, final Registration registration, final Object argument) {
+            this.id = id;
+            this.registration = registration;
+            this.argument = argument;
+        }
+
+        private String render(final ResolutionContext p0, final User p1, final CachedDataManager p2, final QueryOptions p3, final IPlaceholderFormatter formatter) {
+            final Placeholder placeholder = this.registration.placeholder;
+            if (placeholder instanceof ArgumentPlaceholder) {
+                return ((ArgumentPlaceholder<?>)placeholder).render(p0, p1, p2, p3, this.argument, formatter);
+            }
+            return format(((StaticPlaceholder)placeholder).handle(p0, p1, p2, p3), formatter);
+        }
+
+        private static String format(final Object result, final IPlaceholderFormatter formatter) {
+            if (result instanceof Boolean) {
+                return formatter.formatBoolean((Boolean)result);
+            }
+            return (result == null) ? null : result.toString();
+        }
+
+        private long deadline(final long now) {
+            final long ttl = this.registration.ttl;
+            return (ttl == ValueCache.NEVER) ? ValueCache.NEVER : (now + ttl) / ttl * ttl;
+        }
     }
 }
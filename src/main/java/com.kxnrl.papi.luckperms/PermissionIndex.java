@@ -0,0 +1,70 @@
+package com.kxnrl.papi.luckperms;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import net.luckperms.api.context.ImmutableContextSet;
+import net.luckperms.api.node.Node;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+final class PermissionIndex
+{
+    private static final int MAX_VIEWS = 16;
+
+    private final Map<ImmutableContextSet, Set<String>> keysByContext;
+    private final Map<ImmutableContextSet, Set<String>> views;
+
+    private PermissionIndex(final Map<ImmutableContextSet, Set<String>> keysByContext) {
+        this.keysByContext = keysByContext;
+        this.views = new ConcurrentHashMap<ImmutableContextSet, Set<String>>();
+    }
+
+    static PermissionIndex build(final Collection<Node> nodes) {
+        final Map<ImmutableContextSet, Set<String>> keysByContext = new HashMap<ImmutableContextSet, Set<String>>();
+        for (final Node node : nodes) {
+            keysByContext.computeIfAbsent(node.getContexts(), c -> new HashSet<String>()).add(node.getKey());
+        }
+        final ImmutableMap.Builder<ImmutableContextSet, Set<String>> builder = ImmutableMap.builder();
+        keysByContext.forEach((context, keys) -> builder.put(context, ImmutableSet.copyOf(keys)));
+        return new PermissionIndex(builder.build());
+    }
+
+    boolean contains(final String key, final ImmutableContextSet context) {
+        return this.view(context).contains(key);
+    }
+
+    private Set<String> view(final ImmutableContextSet context) {
+        final Set<String> view = this.views.get(context);
+        if (view != null) {
+            return view;
+        }
+        if (this.views.size() >= MAX_VIEWS) {
+            this.views.clear();
+        }
+        return this.views.computeIfAbsent(context, this::createView);
+    }
+
+    // Union of every bucket the context satisfies, the common single-bucket case shares the bucket itself.
+    private Set<String> createView(final ImmutableContextSet context) {
+        Set<String> single = null;
+        ImmutableSet.Builder<String> union = null;
+        for (final Map.Entry<ImmutableContextSet, Set<String>> entry : this.keysByContext.entrySet()) {
+            if (!entry.getKey().isSatisfiedBy(context)) {
+                continue;
+            }
+            if (single == null && union == null) {
+                single = entry.getValue();
+                continue;
+            }
+            if (union == null) {
+                union = ImmutableSet.<String>builder().addAll(single);
+            }
+            union.addAll(entry.getValue());
+        }
+        if (union != null) {
+            return union.build();
+        }
+        return (single != null) ? single : ImmutableSet.<String>of();
+    }
+}
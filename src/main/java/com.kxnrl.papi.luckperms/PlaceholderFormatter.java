@@ -0,0 +1,150 @@
+package com.kxnrl.papi.luckperms;
+
+import com.kxnrl.papi.luckperms.structures.IPlaceholderFormatter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Templates are parsed once, rendering only appends precomputed literals and numbers into a per-thread buffer.
+final class PlaceholderFormatter implements IPlaceholderFormatter
+{
+    static final String DEFAULT_DURATION = "{d}d {h}h {m}m {s}s";
+
+    private static final char[] UNITS = { 'd', 'h', 'm', 's' };
+    private static final long[] FACTORS = { 86400L, 3600L, 60L, 1L };
+    // Countdowns shared by many players render the same seconds over and over.
+    private static final int RECENT_DURATIONS = 256;
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(32));
+
+    private final String prefix;
+    private final long[] factors;
+    private final String[] suffixes;
+    private final String[] separators;
+    private final String trueText;
+    private final String falseText;
+    private final AtomicReferenceArray<Formatted> recent;
+
+    private PlaceholderFormatter(final String prefix, final long[] factors, final String[] suffixes, final String[] separators, final String trueText, final String falseText) {
+        this.prefix = prefix;
+        this.factors = factors;
+        this.suffixes = suffixes;
+        this.separators = separators;
+        this.trueText = trueText;
+        this.falseText = falseText;
+        this.recent = new AtomicReferenceArray<Formatted>(RECENT_DURATIONS);
+    }
+
+    /*
+     * {d} {h} {m} {s} mark the units, largest first. A unit left out is counted in the next smaller one present ("{h}h {m}m" shows 2 days as 48h),
+     * time below the smallest unit present is truncated ("{d}d {h}h {m}m" shows 30 seconds as 0m).
+     * Text right after a unit is its suffix, trailing whitespace separates it from the next unit that is printed,
+     * so "{d}天{h}小时{m}分{s}秒" works as well as the default.
+     */
+    static PlaceholderFormatter compile(final String duration, final String trueText, final String falseText) {
+        final List<Long> factors = new ArrayList<Long>();
+        final List<String> literals = new ArrayList<String>();
+        int last = -1;
+        int start = 0;
+        int i = duration.indexOf('{');
+        while (i >= 0 && i + 2 < duration.length() && duration.charAt(i + 2) == '}') {
+            final int unit = unit(duration.charAt(i + 1));
+            if (unit <= last) {
+                throw new IllegalArgumentException("Invalid duration template: " + duration);
+            }
+            literals.add(duration.substring(start, i));
+            factors.add(FACTORS[unit]);
+            last = unit;
+            start = i + 3;
+            i = duration.indexOf('{', start);
+        }
+        if (factors.isEmpty() || i >= 0) {
+            throw new IllegalArgumentException("Invalid duration template: " + duration);
+        }
+        literals.add(duration.substring(start));
+        final int count = factors.size();
+        final long[] unitFactors = new long[count];
+        final String[] suffixes = new String[count];
+        final String[] separators = new String[count];
+        for (int u = 0; u < count; ++u) {
+            unitFactors[u] = factors.get(u);
+            final String literal = literals.get(u + 1);
+            if (u + 1 == count) {
+                suffixes[u] = literal;
+                separators[u] = "";
+                continue;
+            }
+            int end = literal.length();
+            while (end > 0 && Character.isWhitespace(literal.charAt(end - 1))) {
+                --end;
+            }
+            suffixes[u] = literal.substring(0, end);
+            separators[u] = literal.substring(end);
+        }
+        return new PlaceholderFormatter(literals.get(0), unitFactors, suffixes, separators, trueText, falseText);
+    }
+
+    @Override
+    public String formatDuration(final long seconds) {
+        final long value = Math.max(0L, seconds);
+        final int slot = (int)(value & (RECENT_DURATIONS - 1));
+        final Formatted recent = this.recent.get(slot);
+        if (recent != null && recent.seconds == value) {
+            return recent.text;
+        }
+        final StringBuilder buffer = BUFFER.get();
+        buffer.setLength(0);
+        this.appendDuration(buffer, value);
+        final String text = buffer.toString();
+        this.recent.set(slot, new Formatted(value, text));
+        return text;
+    }
+
+    // Negative durations render as zero.
+    @Override
+    public void appendDuration(final StringBuilder out, final long seconds) {
+        out.append(this.prefix);
+        long remaining = Math.max(0L, seconds);
+        int previous = -1;
+        for (int u = 0; u < this.factors.length; ++u) {
+            final long value = remaining / this.factors[u];
+            remaining %= this.factors[u];
+            if (value == 0L) {
+                continue;
+            }
+            if (previous >= 0) {
+                out.append(this.separators[previous]);
+            }
+            out.append(value).append(this.suffixes[u]);
+            previous = u;
+        }
+        if (previous < 0) {
+            out.append('0').append(this.suffixes[this.suffixes.length - 1]);
+        }
+    }
+
+    @Override
+    public String formatBoolean(final boolean value) {
+        return value ? this.trueText : this.falseText;
+    }
+
+    private static int unit(final char c) {
+        for (int u = 0; u < UNITS.length; ++u) {
+            if (UNITS[u] == c) {
+                return u;
+            }
+        }
+        return -1;
+    }
+
+    private static final class Formatted
+    {
+        private final long seconds;
+        private final String text;
+
+        private Formatted(final long seconds, final String text) {
+            this.seconds = seconds;
+            this.text = text;
+        }
+    }
+}
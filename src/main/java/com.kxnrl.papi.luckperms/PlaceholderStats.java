@@ -0,0 +1,140 @@
+package com.kxnrl.papi.luckperms;
+
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+// Per placeholder id counters, callers check isEnabled() first so a disabled instance costs one volatile read.
+final class PlaceholderStats implements PlaceholderStatsMXBean
+{
+    private final Map<String, Entry> entries;
+    private final LongAdder unknown;
+    private final Supplier<CacheStats> tokenCacheStats;
+    private volatile boolean enabled;
+
+    PlaceholderStats(final Collection<String> ids, final Supplier<CacheStats> tokenCacheStats) {
+        final ImmutableMap.Builder<String, Entry> entries = ImmutableMap.builder();
+        ids.forEach(id -> entries.put(id, new Entry(id)));
+        this.entries = entries.build();
+        this.unknown = new LongAdder();
+        this.tokenCacheStats = tokenCacheStats;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    @Override
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    void record(final String id, final long nanos, final boolean cached) {
+        final Entry entry = this.entries.get(id);
+        if (entry == null) {
+            return;
+        }
+        entry.latency.record(nanos);
+        if (cached) {
+            entry.cacheHits.increment();
+        }
+    }
+
+    // Async mode answers the server thread from published values, those reads never reach record().
+    void recordAsyncRead(final String id, final long nanos) {
+        final Entry entry = this.entries.get(id);
+        if (entry != null) {
+            entry.asyncReads.record(nanos);
+        }
+    }
+
+    void recordUnknown() {
+        if (this.enabled) {
+            this.unknown.increment();
+        }
+    }
+
+    @Override
+    public long getUnknownTokens() {
+        return this.unknown.sum();
+    }
+
+    @Override
+    public double getTokenCacheHitRate() {
+        return this.tokenCacheStats.get().hitRate();
+    }
+
+    @Override
+    public Map<String, Long> getCalls() {
+        return this.entries.values().stream().collect(Collectors.toMap(e -> e.id, e -> e.latency.count()));
+    }
+
+    @Override
+    public Map<String, Long> getTotalTimeNanos() {
+        return this.entries.values().stream().collect(Collectors.toMap(e -> e.id, e -> e.latency.totalNanos()));
+    }
+
+    @Override
+    public Map<String, Long> getAsyncReads() {
+        return this.entries.values().stream().collect(Collectors.toMap(e -> e.id, e -> e.asyncReads.count()));
+    }
+
+    @Override
+    public List<String> top(final int limit) {
+        return this.entries.values().stream()
+                .filter(e -> e.latency.count() > 0L || e.asyncReads.count() > 0L)
+                .sorted(Comparator.comparingLong((Entry e) -> e.latency.totalNanos() + e.asyncReads.totalNanos()).reversed())
+                .limit(limit)
+                .map(Entry::describe)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void reset() {
+        this.entries.values().forEach(Entry::reset);
+        this.unknown.reset();
+    }
+
+    private static final class Entry
+    {
+        private final String id;
+        private final LatencyHistogram latency;
+        private final LongAdder cacheHits;
+        private final LatencyHistogram asyncReads;
+
+        private Entry(final String id) {
+            this.id = id;
+            this.latency = new LatencyHistogram();
+            this.cacheHits = new LongAdder();
+            this.asyncReads = new LatencyHistogram();
+        }
+
+        private String describe() {
+            final StringBuilder line = new StringBuilder(this.id);
+            final long calls = this.latency.count();
+            if (calls > 0L) {
+                final long total = this.latency.totalNanos();
+                line.append(String.format(" calls=%d total=%.2fms avg=%.1fus p99=%.1fus cached=%.0f%%",
+                        calls, total / 1e6, total / 1e3 / calls, this.latency.percentile(99.0) / 1e3, 100.0 * this.cacheHits.sum() / calls));
+            }
+            final long reads = this.asyncReads.count();
+            if (reads > 0L) {
+                final long total = this.asyncReads.totalNanos();
+                line.append(String.format(" async_reads=%d total=%.2fms avg=%.1fus p99=%.1fus",
+                        reads, total / 1e6, total / 1e3 / reads, this.asyncReads.percentile(99.0) / 1e3));
+            }
+            return line.toString();
+        }
+
+        private void reset() {
+            this.latency.reset();
+            this.cacheHits.reset();
+            this.asyncReads.reset();
+        }
+    }
+}
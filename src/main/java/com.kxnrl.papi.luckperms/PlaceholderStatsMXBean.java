@@ -0,0 +1,25 @@
+package com.kxnrl.papi.luckperms;
+
+import java.util.List;
+import java.util.Map;
+
+public interface PlaceholderStatsMXBean
+{
+    boolean isEnabled();
+
+    void setEnabled(final boolean enabled);
+
+    long getUnknownTokens();
+
+    double getTokenCacheHitRate();
+
+    Map<String, Long> getCalls();
+
+    Map<String, Long> getTotalTimeNanos();
+
+    Map<String, Long> getAsyncReads();
+
+    List<String> top(final int limit);
+
+    void reset();
+}
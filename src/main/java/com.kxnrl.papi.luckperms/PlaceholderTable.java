@@ -0,0 +1,50 @@
+package com.kxnrl.papi.luckperms;
+
+import com.kxnrl.papi.luckperms.structures.IPlaceholderTable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+final class PlaceholderTable implements IPlaceholderTable
+{
+    private final List<UUID> players;
+    private final List<String> placeholders;
+    private final Map<UUID, Integer> rows;
+    private final Map<String, Integer> columns;
+    private final String[] values;
+
+    PlaceholderTable(final List<UUID> players, final List<String> placeholders, final Map<UUID, Integer> rows, final Map<String, Integer> columns) {
+        this.players = players;
+        this.placeholders = placeholders;
+        this.rows = rows;
+        this.columns = columns;
+        this.values = new String[players.size() * placeholders.size()];
+    }
+
+    void set(final int row, final int column, final String value) {
+        this.values[row * this.placeholders.size() + column] = value;
+    }
+
+    @Override
+    public List<UUID> getPlayers() {
+        return this.players;
+    }
+
+    @Override
+    public List<String> getPlaceholders() {
+        return this.placeholders;
+    }
+
+    @Override
+    public String get(final int row, final int column) {
+        return this.values[row * this.placeholders.size() + column];
+    }
+
+    @Override
+    public String get(final UUID player, final String placeHolder) {
+        final Integer row = this.rows.get(player);
+        final Integer column = this.columns.get(placeHolder);
+        return (row == null || column == null) ? null : this.get(row, column);
+    }
+}
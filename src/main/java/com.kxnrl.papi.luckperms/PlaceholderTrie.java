@@ -0,0 +1,141 @@
+package com.kxnrl.papi.luckperms;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+final class PlaceholderTrie<T>
+{
+    private final Node<T> root;
+
+    private PlaceholderTrie(final Node<T> root) {
+        this.root = root;
+    }
+
+    static <T> Builder<T> builder() {
+        return new Builder<T>();
+    }
+
+    // Single pass over the token, lowercasing per char, keeping the longest route that accepts it.
+    Route<T> lookup(final String token) {
+        final int length = token.length();
+        Route<T> match = null;
+        Node<T> node = this.root;
+        for (int i = 0; i < length; ++i) {
+            node = node.child(Character.toLowerCase(token.charAt(i)));
+            if (node == null) {
+                break;
+            }
+            final Route<T> route = node.route;
+            if (route == null) {
+                continue;
+            }
+            if (!route.dynamic) {
+                if (i + 1 == length) {
+                    return route;
+                }
+            }
+            else if (i + 1 < length) {
+                match = route;
+            }
+        }
+        return match;
+    }
+
+    static final class Route<T>
+    {
+        private final String id;
+        private final T value;
+        private final boolean dynamic;
+
+        private Route(final String id, final T value, final boolean dynamic) {
+            this.id = id;
+            this.value = value;
+            this.dynamic = dynamic;
+        }
+
+        String id() {
+            return this.id;
+        }
+
+        T value() {
+            return this.value;
+        }
+
+        boolean isDynamic() {
+            return this.dynamic;
+        }
+
+        // Dynamic routes match on prefix, the rest of the token is the argument.
+        int length() {
+            return this.id.length();
+        }
+    }
+
+    private static final class Node<T>
+    {
+        private final char[] keys;
+        private final Node<T>[] children;
+        private final Route<T> route;
+
+        private Node(final char[] keys, final Node<T>[] children, final Route<T> route) {
+            this.keys = keys;
+            this.children = children;
+            this.route = route;
+        }
+
+        private Node<T> child(final char c) {
+            final char[] keys = this.keys;
+            for (int i = 0; i < keys.length; ++i) {
+                if (keys[i] == c) {
+                    return this.children[i];
+                }
+                if (keys[i] > c) {
+                    break;
+                }
+            }
+            return null;
+        }
+    }
+
+    static final class Builder<T>
+    {
+        private final MutableNode<T> root;
+
+        private Builder() {
+            this.root = new MutableNode<T>();
+        }
+
+        Builder<T> add(final String id, final T value, final boolean dynamic) {
+            final String key = id.toLowerCase();
+            MutableNode<T> node = this.root;
+            for (int i = 0; i < key.length(); ++i) {
+                node = node.children.computeIfAbsent(key.charAt(i), c -> new MutableNode<T>());
+            }
+            node.route = new Route<T>(key, value, dynamic);
+            return this;
+        }
+
+        PlaceholderTrie<T> build() {
+            return new PlaceholderTrie<T>(this.root.compile());
+        }
+    }
+
+    private static final class MutableNode<T>
+    {
+        private final Map<Character, MutableNode<T>> children = new TreeMap<Character, MutableNode<T>>();
+        private Route<T> route;
+
+        @SuppressWarnings("unchecked")
+        private Node<T> compile() {
+            final char[] keys = new char[this.children.size()];
+            final Node<T>[] nodes = (Node<T>[])new Node[this.children.size()];
+            int i = 0;
+            for (final Map.Entry<Character, MutableNode<T>> entry : this.children.entrySet()) {
+                keys[i] = entry.getKey();
+                nodes[i] = entry.getValue().compile();
+                ++i;
+            }
+            return new Node<T>(keys, nodes, this.route);
+        }
+    }
+}
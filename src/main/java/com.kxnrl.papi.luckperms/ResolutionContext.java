@@ -0,0 +1,65 @@
+package com.kxnrl.papi.luckperms;
+
+import com.kxnrl.papi.luckperms.structures.IResolutionContext;
+import net.luckperms.api.cacheddata.CachedDataManager;
+import net.luckperms.api.context.ImmutableContextSet;
+import net.luckperms.api.model.user.User;
+import net.luckperms.api.query.QueryOptions;
+
+import java.util.UUID;
+
+final class ResolutionContext implements IResolutionContext
+{
+    private final Object subject;
+    private final User user;
+    private final CachedDataManager cachedData;
+    private final QueryOptions queryOptions;
+    private final int tick;
+    private final ValueCache.Values values;
+
+    ResolutionContext(final Object subject, final User user, final QueryOptions queryOptions, final int tick, final ValueCache.Values values) {
+        this.subject = subject;
+        this.user = user;
+        this.cachedData = user.getCachedData();
+        this.queryOptions = queryOptions;
+        this.tick = tick;
+        this.values = values;
+    }
+
+    Object subject() {
+        return this.subject;
+    }
+
+    int tick() {
+        return this.tick;
+    }
+
+    ValueCache.Values values() {
+        return this.values;
+    }
+
+    @Override
+    public UUID getUniqueId() {
+        return this.user.getUniqueId();
+    }
+
+    @Override
+    public User getUser() {
+        return this.user;
+    }
+
+    @Override
+    public CachedDataManager getCachedData() {
+        return this.cachedData;
+    }
+
+    @Override
+    public QueryOptions getQueryOptions() {
+        return this.queryOptions;
+    }
+
+    @Override
+    public ImmutableContextSet getContexts() {
+        return this.queryOptions.context();
+    }
+}
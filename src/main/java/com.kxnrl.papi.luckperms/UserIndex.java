@@ -0,0 +1,88 @@
+package com.kxnrl.papi.luckperms;
+
+import net.luckperms.api.model.user.User;
+import net.luckperms.api.node.Node;
+import net.luckperms.api.query.QueryOptions;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+// Immutable facets of one user's data, built lazily and thrown away whenever LuckPerms recalculates the user.
+final class UserIndex
+{
+    private final User user;
+    private final GroupSnapshot.Holder groups;
+    private static final int MAX_INHERITED_PERMISSIONS = 8;
+
+    private volatile InheritanceIndex inheritance;
+    private volatile PermissionIndex permissions;
+    private final Map<QueryOptions, PermissionIndex> inheritedPermissions;
+    private final AtomicReference<ExpiryIndex> expiry;
+    private final AtomicReference<ExpiryIndex> inheritedExpiry;
+
+    UserIndex(final User user, final GroupSnapshot.Holder groups) {
+        this.user = user;
+        this.groups = groups;
+        this.expiry = new AtomicReference<ExpiryIndex>();
+        this.inheritedExpiry = new AtomicReference<ExpiryIndex>();
+        this.inheritedPermissions = new ConcurrentHashMap<QueryOptions, PermissionIndex>();
+    }
+
+    User user() {
+        return this.user;
+    }
+
+    InheritanceIndex inheritance() {
+        InheritanceIndex inheritance = this.inheritance;
+        if (inheritance == null) {
+            inheritance = InheritanceIndex.build(this.user, this.groups.current());
+            this.inheritance = inheritance;
+        }
+        return inheritance;
+    }
+
+    PermissionIndex permissions() {
+        PermissionIndex permissions = this.permissions;
+        if (permissions == null) {
+            permissions = PermissionIndex.build(this.user.getNodes());
+            this.permissions = permissions;
+        }
+        return permissions;
+    }
+
+    // Inherited nodes depend on the query options they were resolved with, so each combination gets its own index.
+    PermissionIndex inheritedPermissions(final QueryOptions queryOptions) {
+        final PermissionIndex permissions = this.inheritedPermissions.get(queryOptions);
+        if (permissions != null) {
+            return permissions;
+        }
+        if (this.inheritedPermissions.size() >= MAX_INHERITED_PERMISSIONS) {
+            this.inheritedPermissions.clear();
+        }
+        return this.inheritedPermissions.computeIfAbsent(queryOptions, q -> PermissionIndex.build(this.user.resolveInheritedNodes(q)));
+    }
+
+    ExpiryIndex expiry() {
+        return this.expiry(this.expiry, this.user::getNodes);
+    }
+
+    // Resolving the whole inheritance tree is the expensive part, it only happens when the index is rebuilt.
+    ExpiryIndex inheritedExpiry() {
+        return this.expiry(this.inheritedExpiry, () -> this.user.resolveInheritedNodes(QueryOptions.nonContextual()));
+    }
+
+    // Rebuilt on read once the earliest node has expired, no timer outlives the index.
+    private ExpiryIndex expiry(final AtomicReference<ExpiryIndex> reference, final Supplier<Collection<Node>> nodes) {
+        final long now = System.currentTimeMillis();
+        final ExpiryIndex current = reference.get();
+        if (current != null && (current.nextExpiry() == ExpiryIndex.NONE || now < current.nextExpiry())) {
+            return current;
+        }
+        final ExpiryIndex index = ExpiryIndex.build(nodes.get(), now);
+        reference.compareAndSet(current, index);
+        return index;
+    }
+}
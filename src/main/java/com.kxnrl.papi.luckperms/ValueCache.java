@@ -0,0 +1,87 @@
+package com.kxnrl.papi.luckperms;
+
+import net.luckperms.api.model.user.User;
+import net.luckperms.api.query.QueryOptions;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+final class ValueCache
+{
+    static final long NEVER = Long.MAX_VALUE;
+
+    // Caps the tokens kept per player, dynamic arguments are player input.
+    private static final int MAX_VALUES = 256;
+
+    private final Map<UUID, Values> players;
+
+    ValueCache() {
+        this.players = new ConcurrentHashMap<UUID, Values>();
+    }
+
+    // Values computed for another User instance (a reloaded offline user) or under other query options (e.g. before a world change) are dropped.
+    Values forPlayer(final User user, final QueryOptions queryOptions) {
+        final Values values = this.players.get(user.getUniqueId());
+        if (values != null && values.matches(user, queryOptions)) {
+            return values;
+        }
+        return this.players.compute(user.getUniqueId(), (k, v) -> (v != null && v.matches(user, queryOptions)) ? v : new Values(user, queryOptions));
+    }
+
+    // Writers still holding the removed Values only write into the orphan, never back into the cache.
+    void invalidate(final UUID uuid) {
+        this.players.remove(uuid);
+    }
+
+    void invalidateAll() {
+        this.players.clear();
+    }
+
+    static final class Values
+    {
+        private final User user;
+        private final QueryOptions queryOptions;
+        private final Map<String, Value> values;
+
+        private Values(final User user, final QueryOptions queryOptions) {
+            this.user = user;
+            this.queryOptions = queryOptions;
+            this.values = new ConcurrentHashMap<String, Value>();
+        }
+
+        private boolean matches(final User user, final QueryOptions queryOptions) {
+            return this.user == user && this.queryOptions.equals(queryOptions);
+        }
+
+        String get(final String token, final long now) {
+            final Value value = this.values.get(token);
+            if (value == null) {
+                return null;
+            }
+            if (value.deadline <= now) {
+                this.values.remove(token, value);
+                return null;
+            }
+            return value.value;
+        }
+
+        void put(final String token, final String value, final long deadline) {
+            if (this.values.size() >= MAX_VALUES) {
+                this.values.clear();
+            }
+            this.values.put(token, new Value(value, deadline));
+        }
+    }
+
+    private static final class Value
+    {
+        private final String value;
+        private final long deadline;
+
+        private Value(final String value, final long deadline) {
+            this.value = value;
+            this.deadline = deadline;
+        }
+    }
+}
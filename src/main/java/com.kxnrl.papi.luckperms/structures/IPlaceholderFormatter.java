@@ -0,0 +1,11 @@
+package com.kxnrl.papi.luckperms.structures;
+
+public interface IPlaceholderFormatter
+{
+    // Zero units are left out, nothing left at all renders as zero of the smallest unit.
+    String formatDuration(final long seconds);
+
+    void appendDuration(final StringBuilder out, final long seconds);
+
+    String formatBoolean(final boolean value);
+}
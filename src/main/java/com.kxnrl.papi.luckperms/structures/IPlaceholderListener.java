@@ -0,0 +1,12 @@
+package com.kxnrl.papi.luckperms.structures;
+
+import org.spongepowered.api.entity.living.player.Player;
+
+import java.util.Map;
+
+@FunctionalInterface
+public interface IPlaceholderListener
+{
+    // Called off the server thread with only the tokens whose value changed, the first call carries every token.
+    void onPlaceholdersChanged(final Player player, final Map<String, String> changed);
+}
@@ -2,7 +2,19 @@ package com.kxnrl.papi.luckperms.structures;
 
 public interface IPlaceholderPlatform
 {
-    String formatTime(final int p0);
-    
-    String formatBoolean(final boolean p0);
+    // Compiled once, the provider formats every time and boolean through it.
+    IPlaceholderFormatter getFormatter();
+
+    default String formatTime(final int p0) {
+        return this.getFormatter().formatDuration(p0);
+    }
+
+    default String formatBoolean(final boolean p0) {
+        return this.getFormatter().formatBoolean(p0);
+    }
+
+    int getCurrentTick();
+
+    // Shown for offline players until their data has been loaded.
+    String getLoadingPlaceholder();
 }
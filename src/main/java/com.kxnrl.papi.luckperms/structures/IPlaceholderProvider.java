@@ -2,8 +2,32 @@ package com.kxnrl.papi.luckperms.structures;
 
 import org.spongepowered.api.entity.living.player.Player;
 
-@FunctionalInterface
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+
 public interface IPlaceholderProvider
 {
     String onPlaceholderRequest(final Player player, final String placeHolder);
+
+    // Snapshot of the player's LuckPerms state for the current tick, null if the user is not loaded.
+    IResolutionContext createContext(final Player player);
+
+    String onPlaceholderRequest(final IResolutionContext context, final String placeHolder);
+
+    // Works for players that aren't online, their user is loaded in the background and cached.
+    String onPlaceholderRequest(final UUID uuid, final String placeHolder);
+
+    // Null while the user is still loading.
+    IResolutionContext createContext(final UUID uuid);
+
+    IPlaceholderTable onPlaceholderRequest(final Collection<? extends Player> players, final List<String> placeHolders);
+
+    // Large batches are split across the pool, LuckPerms cached data is safe to read concurrently.
+    IPlaceholderTable onPlaceholderRequest(final Collection<? extends Player> players, final List<String> placeHolders, final ForkJoinPool pool);
+
+    // Pushes changed values to the listener instead of being polled, recomputed on LuckPerms changes and value expiry only.
+    IPlaceholderSubscription subscribe(final Player player, final Set<String> placeHolders, final IPlaceholderListener listener);
 }
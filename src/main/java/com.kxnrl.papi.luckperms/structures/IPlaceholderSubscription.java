@@ -0,0 +1,16 @@
+package com.kxnrl.papi.luckperms.structures;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface IPlaceholderSubscription extends AutoCloseable
+{
+    UUID getPlayer();
+
+    List<String> getPlaceholders();
+
+    boolean isClosed();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,16 @@
+package com.kxnrl.papi.luckperms.structures;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface IPlaceholderTable
+{
+    List<UUID> getPlayers();
+
+    // Distinct tokens in request order.
+    List<String> getPlaceholders();
+
+    String get(final int row, final int column);
+
+    String get(final UUID player, final String placeHolder);
+}
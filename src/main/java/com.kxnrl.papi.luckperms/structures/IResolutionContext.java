@@ -0,0 +1,21 @@
+package com.kxnrl.papi.luckperms.structures;
+
+import net.luckperms.api.cacheddata.CachedDataManager;
+import net.luckperms.api.context.ImmutableContextSet;
+import net.luckperms.api.model.user.User;
+import net.luckperms.api.query.QueryOptions;
+
+import java.util.UUID;
+
+public interface IResolutionContext
+{
+    UUID getUniqueId();
+
+    User getUser();
+
+    CachedDataManager getCachedData();
+
+    QueryOptions getQueryOptions();
+
+    ImmutableContextSet getContexts();
+}